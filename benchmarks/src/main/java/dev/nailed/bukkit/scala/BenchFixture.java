@@ -0,0 +1,194 @@
+package dev.nailed.bukkit.scala;
+
+import dev.nailed.bukkit.scala.bench.fixture.BridgedPlugin;
+import dev.nailed.bukkit.scala.bench.fixture.DiscoveredFieldPlugin;
+import dev.nailed.bukkit.scala.bench.fixture.FieldPlugin;
+import dev.nailed.bukkit.scala.bench.fixture.SetterPlugin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Shared, deterministic setup for the benchmarks.
+ * 
+ * The Scala library JARs are copied to {@code target/fixture/} by the build (next to
+ * {@code benchmarks.jar}; override with {@code -Dbench.fixture=<dir>}). The plugin JAR is
+ * assembled once per JVM from the fixture classes, so every run - and every commit - measures
+ * the same JARs and the same class names.
+ */
+final class BenchFixture {
+    
+    static final String PLUGIN_PACKAGE = "dev.nailed.bukkit.scala.bench.fixture";
+    static final String PLUGIN_PATH = PLUGIN_PACKAGE.replace('.', '/') + "/";
+    
+    static final String CONFIG_RESOURCE = "config.yml";
+    static final Set<String> PLUGIN_RESOURCES = new HashSet<>(Arrays.asList(
+        "plugin.yml", CONFIG_RESOURCE, PluginInjector.PLAN_RESOURCE));
+    
+    static final List<Class<?>> PLUGIN_CLASSES = Collections.unmodifiableList(Arrays.<Class<?>>asList(
+        BridgedPlugin.class, SetterPlugin.class, FieldPlugin.class, DiscoveredFieldPlugin.class));
+    
+    // Number of Scala library classes used by the cold-load benchmarks
+    static final int SCALA_CLASS_COUNT = 4000;
+    
+    private static File scala3Jar;
+    private static File scala2Jar;
+    private static File pluginJar;
+    private static List<String> scalaClasses;
+    
+    private BenchFixture() {}
+    
+    static synchronized File pluginJar() throws IOException {
+        if (pluginJar == null) {
+            File jar = File.createTempFile("bench-plugin", ".jar");
+            jar.deleteOnExit();
+            writePluginJar(jar);
+            pluginJar = jar;
+        }
+        return pluginJar;
+    }
+    
+    /**
+     * Plugin loader as ScalaRuntime creates it.
+     * 
+     * @param sharedRuntime if true, Scala classes come from {@code sharedLoader}
+     *                      (see {@link #sharedRuntimeLoader()}) instead of the plugin loader's URLs
+     */
+    static ScalaRuntime.ScalaPluginClassLoader pluginLoader(boolean sharedRuntime, ClassLoader sharedLoader) 
+            throws IOException {
+        URL plugin = pluginJar().toURI().toURL();
+        if (sharedRuntime) {
+            return new ScalaRuntime.ScalaPluginClassLoader(new URL[] { plugin }, new StubBukkitClassLoader(), sharedLoader);
+        }
+        locateScala();
+        return new ScalaRuntime.ScalaPluginClassLoader(new URL[] {
+            scala3Jar.toURI().toURL(), scala2Jar.toURI().toURL(), plugin
+        }, new StubBukkitClassLoader());
+    }
+    
+    /**
+     * Runtime loader as in shared mode: only the Scala JARs, no Bukkit or plugin classes.
+     */
+    static URLClassLoader sharedRuntimeLoader() throws IOException {
+        locateScala();
+        return new URLClassLoader(new URL[] { scala3Jar.toURI().toURL(), scala2Jar.toURI().toURL() }, null);
+    }
+    
+    /**
+     * The first {@link #SCALA_CLASS_COUNT} class names of the Scala 2 library, in name order.
+     */
+    static synchronized List<String> scalaClasses() throws IOException {
+        if (scalaClasses == null) {
+            locateScala();
+            List<String> names = new ArrayList<>();
+            try (JarFile jar = new JarFile(scala2Jar)) {
+                Enumeration<JarEntry> entries = jar.entries();
+                while (entries.hasMoreElements()) {
+                    String entry = entries.nextElement().getName();
+                    if (entry.startsWith("scala/") && entry.endsWith(".class")) {
+                        names.add(entry.substring(0, entry.length() - 6).replace('/', '.'));
+                    }
+                }
+            }
+            Collections.sort(names);
+            scalaClasses = Collections.unmodifiableList(names.subList(0, Math.min(SCALA_CLASS_COUNT, names.size())));
+        }
+        return scalaClasses;
+    }
+    
+    private static synchronized void locateScala() throws IOException {
+        if (scala3Jar != null) return;
+        File dir = fixtureDirectory();
+        File scala3 = new File(dir, "scala3-library_3.jar");
+        File scala2 = new File(dir, "scala-library.jar");
+        if (!scala3.isFile() || !scala2.isFile()) {
+            throw new IOException("Scala library JARs not found in " + dir 
+                + " - build with 'mvn package' or pass -Dbench.fixture=<dir>");
+        }
+        scala3Jar = scala3;
+        scala2Jar = scala2;
+    }
+    
+    private static File fixtureDirectory() throws IOException {
+        String configured = System.getProperty("bench.fixture");
+        if (configured != null) return new File(configured);
+        try {
+            // target/benchmarks.jar or target/classes -> target/fixture
+            File location = new File(BenchFixture.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            return new File(location.getParentFile(), "fixture");
+        } catch (Exception e) {
+            throw new IOException("Cannot locate the benchmark fixture directory", e);
+        }
+    }
+    
+    private static void writePluginJar(File target) throws IOException {
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(target))) {
+            for (Class<?> fixture : PLUGIN_CLASSES) {
+                String path = fixture.getName().replace('.', '/') + ".class";
+                out.putNextEntry(new JarEntry(path));
+                out.write(readClasspathResource(path));
+                out.closeEntry();
+            }
+            
+            out.putNextEntry(new JarEntry("plugin.yml"));
+            out.write(("name: BenchPlugin\nversion: 1.0.0\nmain: " + PLUGIN_PACKAGE + ".Bootstrap\n")
+                .getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+            
+            out.putNextEntry(new JarEntry(CONFIG_RESOURCE));
+            out.write(configYaml());
+            out.closeEntry();
+            
+            out.putNextEntry(new JarEntry(PluginInjector.PLAN_RESOURCE));
+            out.write(("main=" + SetterPlugin.class.getName() + "\nstrategy=method\nmember=setPlugin\n")
+                .getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+    }
+    
+    /**
+     * A 4 KB config.yml - about what a typical plugin ships.
+     */
+    private static byte[] configYaml() {
+        StringBuilder yaml = new StringBuilder();
+        for (int i = 0; yaml.length() < 4096; i++) {
+            yaml.append("section-").append(i).append(":\n")
+                .append("  enabled: true\n")
+                .append("  message: \"Hello from section ").append(i).append("\"\n");
+        }
+        return yaml.toString().getBytes(StandardCharsets.UTF_8);
+    }
+    
+    private static byte[] readClasspathResource(String path) throws IOException {
+        try (InputStream in = BenchFixture.class.getClassLoader().getResourceAsStream(path)) {
+            if (in == null) throw new IOException("Missing fixture class " + path);
+            return readFully(in);
+        }
+    }
+    
+    static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,122 @@
+package dev.nailed.bukkit.scala;
+
+import dev.nailed.bukkit.scala.bench.fixture.BridgedPlugin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URLClassLoader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ScalaPluginClassLoader.loadClass() on a warm loader, by source.
+ * 
+ * Classes defined by the loader (Scala in isolated mode, plugin) are found by findLoadedClass();
+ * delegated ones (JDK, Bukkit, Scala in shared mode) are routed on every explicit call. Misses
+ * cover the negative cache (plugin package), a Bukkit-prefixed name and an unknown package,
+ * each ending in the stub Bukkit loader's ClassNotFoundException as on a server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ClassLoadingBenchmark {
+    
+    private static final String PLUGIN_CLASS = BridgedPlugin.class.getName();
+    private static final String MISSING_PLUGIN_CLASS = BenchFixture.PLUGIN_PACKAGE + ".Missing";
+    
+    @Param({"isolated", "shared"})
+    public String runtime;
+    
+    private URLClassLoader sharedLoader;
+    private ScalaRuntime.ScalaPluginClassLoader loader;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        boolean shared = "shared".equals(runtime);
+        sharedLoader = shared ? BenchFixture.sharedRuntimeLoader() : null;
+        loader = BenchFixture.pluginLoader(shared, sharedLoader);
+        
+        // Define the hit classes once
+        loader.loadClass("scala.Option");
+        loader.loadClass(PLUGIN_CLASS);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        loader.close();
+        if (sharedLoader != null) sharedLoader.close();
+    }
+    
+    @Benchmark
+    public Class<?> jdkClass() throws ClassNotFoundException {
+        return loader.loadClass("java.util.ArrayList");
+    }
+    
+    @Benchmark
+    public Class<?> bukkitClass() throws ClassNotFoundException {
+        return loader.loadClass("org.bukkit.Bukkit");
+    }
+    
+    @Benchmark
+    public Class<?> scalaClass() throws ClassNotFoundException {
+        return loader.loadClass("scala.Option");
+    }
+    
+    @Benchmark
+    public Class<?> pluginClass() throws ClassNotFoundException {
+        return loader.loadClass(PLUGIN_CLASS);
+    }
+    
+    @Benchmark
+    public Class<?> missingPluginClass() {
+        return loadOrNull(MISSING_PLUGIN_CLASS);
+    }
+    
+    @Benchmark
+    public Class<?> missingBukkitClass() {
+        return loadOrNull("org.bukkit.NoSuchClass");
+    }
+    
+    @Benchmark
+    public Class<?> missingClass() {
+        return loadOrNull("com.example.NoSuchClass");
+    }
+    
+    /**
+     * Warm lookups from several threads at once - async pools hitting the same loader.
+     */
+    @Benchmark
+    @Threads(4)
+    public Class<?> scalaClassContended() throws ClassNotFoundException {
+        return loader.loadClass("scala.Option");
+    }
+    
+    @Benchmark
+    @Threads(4)
+    public Class<?> bukkitClassContended() throws ClassNotFoundException {
+        return loader.loadClass("org.bukkit.Bukkit");
+    }
+    
+    private Class<?> loadOrNull(String name) {
+        try {
+            return loader.loadClass(name);
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package dev.nailed.bukkit.scala;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading {@link BenchFixture#SCALA_CLASS_COUNT} Scala library classes plus the plugin classes
+ * through a fresh plugin loader, from one or several threads.
+ * 
+ * With more than one thread the names are striped over a fixed pool, so threads contend on
+ * shared superclasses and on the loader's per-name locks as an async plugin start-up does.
+ * {@code threads} goes up to {@code max}, the core count; numeric values above it are capped,
+ * so compare rows of one machine to see how throughput scales with cores.
+ * {@code locking=loader} wraps every load in the loader's monitor, as a loader that is not
+ * parallel capable would, to show what the per-name locks buy.
+ * In shared mode the runtime loader outlives each invocation: only the first one defines the
+ * Scala classes, later ones measure routing to an already warm runtime - which is the point
+ * of sharing it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(3)
+public class ColdClassLoadingBenchmark {
+    
+    @Param({"isolated", "shared"})
+    public String runtime;
+    
+    @Param({"1", "2", "4", "8", "max"})
+    public String threads;
+    
+    @Param({"per-name", "loader"})
+    public String locking;
+    
+    private int threadCount;
+    private boolean loaderLock;    
+    private List<String> names;
+    private URLClassLoader sharedLoader;
+    private ExecutorService pool;
+    private ScalaRuntime.ScalaPluginClassLoader loader;
+    
+    @Setup(Level.Trial)
+    public void setUpTrial() throws IOException {
+        names = new ArrayList<>(BenchFixture.scalaClasses());
+        for (Class<?> plugin : BenchFixture.PLUGIN_CLASSES) {
+            names.add(plugin.getName());
+        }
+        sharedLoader = "shared".equals(runtime) ? BenchFixture.sharedRuntimeLoader() : null;
+        int cores = Runtime.getRuntime().availableProcessors();
+        threadCount = "max".equals(threads) ? cores : Math.min(Integer.parseInt(threads), cores);
+        loaderLock = "loader".equals(locking);
+        pool = Executors.newFixedThreadPool(threadCount);
+    }
+    
+    @Setup(Level.Invocation)
+    public void setUpInvocation() throws IOException {
+        loader = BenchFixture.pluginLoader(sharedLoader != null, sharedLoader);
+    }
+    
+    @TearDown(Level.Invocation)
+    public void tearDownInvocation() throws IOException {
+        loader.close();
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDownTrial() throws IOException {
+        pool.shutdownNow();
+        if (sharedLoader != null) sharedLoader.close();
+    }
+    
+    @Benchmark
+    public int loadAll() throws Exception {
+        if (threadCount == 1) return loadStripe(0, 1);
+        
+        List<Future<Integer>> stripes = new ArrayList<>(threadCount);
+        for (int t = 0; t < threadCount; t++) {
+            final int first = t;
+            stripes.add(pool.submit(() -> loadStripe(first, threadCount)));
+        }
+        int loaded = 0;
+        for (Future<Integer> stripe : stripes) {
+            loaded += stripe.get();
+        }
+        return loaded;
+    }
+    
+    private int loadStripe(int first, int step) throws ClassNotFoundException {
+        int loaded = 0;
+        for (int i = first; i < names.size(); i += step) {
+            if (load(names.get(i)) != null) loaded++;
+        }
+        return loaded;
+    }
+    
+    private Class<?> load(String name) throws ClassNotFoundException {
+        if (!loaderLock) return loader.loadClass(name);
+        synchronized (loader) {
+            return loader.loadClass(name);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package dev.nailed.bukkit.scala;
+
+import dev.nailed.bukkit.scala.bench.fixture.BridgedPlugin;
+import dev.nailed.bukkit.scala.bench.fixture.DiscoveredFieldPlugin;
+import dev.nailed.bukkit.scala.bench.fixture.FieldPlugin;
+import dev.nailed.bukkit.scala.bench.fixture.SetterPlugin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * PluginInjector strategies, as ScalaBootstrap.injectPlugin() runs them.
+ * 
+ * The JavaPlugin passed in is null - setting it costs the same as setting a real plugin,
+ * and constructing one needs a server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class InjectionBenchmark {
+    
+    @Param({"bridge", "planned-method", "planned-field", "scan-setter", "scan-field", "scan-discovered"})
+    public String strategy;
+    
+    private ScalaRuntime.ScalaPluginClassLoader loader;
+    private PluginInjector injector;
+    private Class<?> scalaClass;
+    private Object instance;
+    private Properties plan;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        loader = BenchFixture.pluginLoader(false, null);
+        
+        String expected;
+        switch (strategy) {
+            case "bridge":
+                scalaClass = load(BridgedPlugin.class);
+                expected = "bridge";
+                break;
+            case "planned-method":
+                scalaClass = load(SetterPlugin.class);
+                plan = plan("method", scalaClass, "setPlugin");
+                expected = "method:setPlugin";
+                break;
+            case "planned-field":
+                scalaClass = load(FieldPlugin.class);
+                plan = plan("field", scalaClass, "plugin");
+                expected = "field:plugin";
+                break;
+            case "scan-setter":
+                scalaClass = load(SetterPlugin.class);
+                expected = "method:setPlugin";
+                break;
+            case "scan-field":
+                scalaClass = load(FieldPlugin.class);
+                expected = "field:plugin";
+                break;
+            case "scan-discovered":
+                scalaClass = load(DiscoveredFieldPlugin.class);
+                expected = "field:owner";
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown strategy " + strategy);
+        }
+        
+        instance = scalaClass.getConstructor().newInstance();
+        injector = new PluginInjector(null, Logger.getLogger("bench"));
+        
+        // Fail fast if a strategy silently falls through to another one
+        String used = injector.inject(instance, scalaClass, plan);
+        if (!expected.equals(used)) {
+            throw new IllegalStateException("Expected " + expected + " but injected via " + used);
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        loader.close();
+    }
+    
+    @Benchmark
+    public String inject() {
+        return injector.inject(instance, scalaClass, plan);
+    }
+    
+    private Class<?> load(Class<?> fixture) throws ClassNotFoundException {
+        return loader.loadClass(fixture.getName());
+    }
+    
+    private static Properties plan(String strategy, Class<?> owner, String member) {
+        Properties plan = new Properties();
+        plan.setProperty("main", owner.getName());
+        plan.setProperty("strategy", strategy);
+        plan.setProperty("owner", owner.getName());
+        plan.setProperty("member", member);
+        return plan;
+    }
+}
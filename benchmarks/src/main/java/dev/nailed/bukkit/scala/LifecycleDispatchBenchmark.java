@@ -0,0 +1,80 @@
+package dev.nailed.bukkit.scala;
+
+import dev.nailed.bukkit.scala.bench.fixture.BridgedPlugin;
+import dev.nailed.bukkit.scala.bench.fixture.SetterPlugin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lifecycle dispatch from the bootstrap into the Scala instance.
+ * 
+ * {@code entryPoint} is the LifecycleDispatcher call alone, {@code callScalaMethod} adds the
+ * context ClassLoader switch the bootstrap wraps around it, and {@code reflective} is the
+ * Method.invoke path the dispatcher replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class LifecycleDispatchBenchmark {
+    
+    @Param({"bridge", "method-handle"})
+    public String dispatch;
+    
+    private ScalaRuntime.ScalaPluginClassLoader loader;
+    private Object instance;
+    private Runnable entryPoint;
+    private Method method;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        loader = BenchFixture.pluginLoader(false, null);
+        
+        Class<?> fixture = "bridge".equals(dispatch) ? BridgedPlugin.class : SetterPlugin.class;
+        instance = loader.loadClass(fixture.getName()).getConstructor().newInstance();
+        
+        LifecycleDispatcher dispatcher = new LifecycleDispatcher(instance);
+        if (dispatcher.isBridged() != "bridge".equals(dispatch)) {
+            throw new IllegalStateException("Fixture " + fixture.getName() + " is not dispatched via " + dispatch);
+        }
+        entryPoint = dispatcher.onEnable;
+        method = instance.getClass().getMethod("onEnable");
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        loader.close();
+    }
+    
+    @Benchmark
+    public void entryPoint() {
+        entryPoint.run();
+    }
+    
+    @Benchmark
+    public Throwable callScalaMethod() {
+        return ScalaBootstrap.runInContext(loader, entryPoint);
+    }
+    
+    @Benchmark
+    public Object reflective() throws Exception {
+        return method.invoke(instance);
+    }
+}
@@ -0,0 +1,92 @@
+package dev.nailed.bukkit.scala;
+
+import dev.nailed.bukkit.scala.bench.fixture.SetterPlugin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLClassLoader;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resource lookups through ScalaPluginClassLoader.getResourceAsStream(), read to the end.
+ * 
+ * Covers a plugin resource (4 KB config.yml), a Scala library resource (from the plugin
+ * loader's URLs or the shared runtime), a missing resource that falls through every source,
+ * and the injection-plan read done once per load. {@code pluginResourceBytes} is the same
+ * plugin resource through getResourceBytes(), without a stream or a copy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ResourceBenchmark {
+    
+    @Param({"isolated", "shared"})
+    public String runtime;
+    
+    private URLClassLoader sharedLoader;
+    private ScalaRuntime.ScalaPluginClassLoader loader;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        boolean shared = "shared".equals(runtime);
+        sharedLoader = shared ? BenchFixture.sharedRuntimeLoader() : null;
+        loader = BenchFixture.pluginLoader(shared, sharedLoader);
+        if (read(BenchFixture.CONFIG_RESOURCE) == null || read("library.properties") == null) {
+            throw new IllegalStateException("Fixture resources not visible through the plugin loader");
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        loader.close();
+        if (sharedLoader != null) sharedLoader.close();
+    }
+    
+    @Benchmark
+    public byte[] pluginResource() throws IOException {
+        return read(BenchFixture.CONFIG_RESOURCE);
+    }
+    
+    @Benchmark
+    public java.nio.ByteBuffer pluginResourceBytes() throws IOException {
+        return loader.getResourceBytes(BenchFixture.CONFIG_RESOURCE);
+    }
+    
+    @Benchmark
+    public byte[] scalaResource() throws IOException {
+        return read("library.properties");
+    }
+    
+    @Benchmark
+    public byte[] missingResource() throws IOException {
+        return read("no/such/resource.txt");
+    }
+    
+    @Benchmark
+    public Properties injectionPlan() {
+        return PluginInjector.loadPlan(loader, SetterPlugin.class.getName());
+    }
+    
+    private byte[] read(String name) throws IOException {
+        try (InputStream in = loader.getResourceAsStream(name)) {
+            return in == null ? null : BenchFixture.readFully(in);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package dev.nailed.bukkit.scala;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Enumeration;
+
+/**
+ * Stands in for the Bukkit PluginClassLoader of a Scala plugin.
+ * 
+ * Serves the Bukkit API and the SDK from the benchmark classpath, but - like the real loader
+ * on a server - cannot see the Scala library or the plugin's own classes, so lookups that fall
+ * through to it end in a ClassNotFoundException exactly as they would in production.
+ */
+final class StubBukkitClassLoader extends ClassLoader {
+    
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+    
+    StubBukkitClassLoader() {
+        super(StubBukkitClassLoader.class.getClassLoader());
+    }
+    
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        if (hidden(name.replace('.', '/'))) throw new ClassNotFoundException(name);
+        return super.loadClass(name, resolve);
+    }
+    
+    @Override
+    public URL getResource(String name) {
+        return hidden(name) ? null : super.getResource(name);
+    }
+    
+    @Override
+    public Enumeration<URL> getResources(String name) throws IOException {
+        return hidden(name) ? Collections.<URL>emptyEnumeration() : super.getResources(name);
+    }
+    
+    private static boolean hidden(String path) {
+        return path.startsWith("scala/") 
+            || path.startsWith("dotty/") 
+            || path.startsWith(BenchFixture.PLUGIN_PATH)
+            || BenchFixture.PLUGIN_RESOURCES.contains(path);
+    }
+}
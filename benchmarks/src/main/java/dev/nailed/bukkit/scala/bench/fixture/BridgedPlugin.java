@@ -0,0 +1,33 @@
+package dev.nailed.bukkit.scala.bench.fixture;
+
+import dev.nailed.bukkit.scala.ScalaPluginLifecycle;
+import org.bukkit.plugin.java.JavaPlugin;
+
+/**
+ * Plugin main class as BukkitPlugin compiles it: lifecycle through the bridge interface.
+ */
+public class BridgedPlugin implements ScalaPluginLifecycle {
+    
+    public JavaPlugin plugin;
+    public long calls;
+    
+    @Override
+    public void setPlugin(JavaPlugin plugin) {
+        this.plugin = plugin;
+    }
+    
+    @Override
+    public void onLoad() {
+        calls++;
+    }
+    
+    @Override
+    public void onEnable() {
+        calls++;
+    }
+    
+    @Override
+    public void onDisable() {
+        calls++;
+    }
+}
@@ -0,0 +1,17 @@
+package dev.nailed.bukkit.scala.bench.fixture;
+
+import org.bukkit.plugin.java.JavaPlugin;
+
+/**
+ * Plugin main class whose JavaPlugin field has no known name - the injector's last resort.
+ */
+public class DiscoveredFieldPlugin {
+    
+    private String name;
+    private int version;
+    private JavaPlugin owner;
+    
+    public JavaPlugin getOwner() {
+        return owner;
+    }
+}
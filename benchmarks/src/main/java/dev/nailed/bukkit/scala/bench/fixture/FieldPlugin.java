@@ -0,0 +1,15 @@
+package dev.nailed.bukkit.scala.bench.fixture;
+
+import org.bukkit.plugin.java.JavaPlugin;
+
+/**
+ * Plugin main class injected through a field named {@code plugin}.
+ */
+public class FieldPlugin {
+    
+    private JavaPlugin plugin;
+    
+    public JavaPlugin getPlugin() {
+        return plugin;
+    }
+}
@@ -0,0 +1,32 @@
+package dev.nailed.bukkit.scala.bench.fixture;
+
+import org.bukkit.plugin.java.JavaPlugin;
+
+/**
+ * Plugin main class without the bridge: public lifecycle methods and a setPlugin() setter.
+ */
+public class SetterPlugin {
+    
+    private JavaPlugin plugin;
+    public long calls;
+    
+    public void setPlugin(JavaPlugin plugin) {
+        this.plugin = plugin;
+    }
+    
+    public JavaPlugin getPlugin() {
+        return plugin;
+    }
+    
+    public void onLoad() {
+        calls++;
+    }
+    
+    public void onEnable() {
+        calls++;
+    }
+    
+    public void onDisable() {
+        calls++;
+    }
+}
@@ -1,23 +1,20 @@
 package com.example
 
-import dev.nailed.bukkit.scala.BukkitPlugin
+import dev.nailed.bukkit.scala.{ArgumentType, BukkitPlugin, EventFilter}
+import dev.nailed.bukkit.scala.Commands.*
 import org.bukkit.event.{EventHandler, Listener}
-import org.bukkit.event.player.PlayerJoinEvent
-import org.bukkit.command.{Command, CommandExecutor, CommandSender}
+import org.bukkit.event.player.{PlayerJoinEvent, PlayerMoveEvent}
 import org.bukkit.entity.Player
-import scala.util.{Try, Success, Failure}
 import scala.concurrent.{Future, ExecutionContext}
-import java.util.concurrent.Executors
+import scala.concurrent.duration.*
 
 /**
  * Example Scala 3 Bukkit plugin demonstrating Scala-specific features.
  */
 class ExamplePlugin extends BukkitPlugin with Listener:
   
-  // Scala 3: Top-level given for ExecutionContext
-  given ExecutionContext = ExecutionContext.fromExecutor(
-    Executors.newFixedThreadPool(2)
-  )
+  // Scala 3: given ExecutionContext - the SDK's async context, shut down on disable
+  given ExecutionContext = async
 
   // ============ Scala 3 Enums ============
   enum Rank:
@@ -31,6 +28,9 @@ class ExamplePlugin extends BukkitPlugin with Listener:
   // ============ Case Classes & Pattern Matching ============
   case class PlayerData(name: String, rank: Rank, coins: Int)
   
+  // Per-player state, dropped automatically when the player quits
+  lazy val players = playerStore[PlayerData]()
+  
   // ============ Extension Methods ============
   extension (p: Player)
     def sendColored(msg: String): Unit = 
@@ -59,6 +59,8 @@ class ExamplePlugin extends BukkitPlugin with Listener:
 
   // ============ Plugin Lifecycle ============
   override def onEnable(): Unit =
+    // Console output is written off the main thread from here on
+    asyncLogging()
     info("§a========== Scala 3 Features Demo ==========")
     
     // Case class
@@ -95,18 +97,39 @@ class ExamplePlugin extends BukkitPlugin with Listener:
     val sum = numbers.foldLeft(0)(_ + _)
     info(s"§bHOF: doubled=$doubled, sum=$sum")
     
-    // Async with Future
+    // Async with Future, result handled back on the main thread
     Future {
       Thread.sleep(100)
       "Async result"
-    }.foreach(r => server.getScheduler.runTask(plugin, (() => 
-      info(s"§bFuture completed: $r")
-    ): Runnable))
+    }.foreach(r => info(s"§bFuture completed: $r"))(using mainThread)
     
-    // Register command
-    getCommand("scala").setExecutor(ScalaCommand())
+    // Register command - compiled once into a trie, with tab completion for free
+    registerCommand(
+      command("scala",
+        literal("info").executes { ctx =>
+          ctx.reply("§bScala version: 3.3.1")
+          ctx.reply("§bFeatures: enums, extensions, opaque types, union types")
+        },
+        literal("coins",
+          argument("amount", ArgumentType.int(min = 0)).executes { ctx =>
+            ctx.reply(s"§aYou have ${Coins(ctx[Int]("amount")).display}")
+          }
+        ),
+        literal("rank",
+          argument("name", ArgumentType.choice(Rank.values.map(_.toString)*)).executes { ctx =>
+            ctx.reply(s"§aRank: ${Rank.valueOf(ctx[String]("name")).prefix}")
+          }
+        )
+      ).executes(_.reply("§aScala 3 plugin is running!"))
+    )
     
     registerEvents()
+    
+    // Event stream - head turns never reach the handler, and each player is heard 4 times a second at most
+    events[PlayerMoveEvent]()
+      .filter(EventFilter.blockChanged)
+      .throttlePerPlayer(250.millis)
+      .foreach(e => fine(s"${e.getPlayer.getName} moved to ${e.getTo.getBlockX}, ${e.getTo.getBlockZ}"))
     info("§a============================================")
 
   override def onDisable(): Unit =
@@ -126,34 +149,9 @@ class ExamplePlugin extends BukkitPlugin with Listener:
                else Rank.Member
     
     p.sendColored(s"&7Your rank: ${rank.prefix}")
+    val data = players.getOrElseUpdate(p.getUniqueId)(PlayerData(p.getName, rank, 0))
+    p.sendColored(s"&7Balance: ${Coins(data.coins).display}")
     
     // Using inline if (Scala 3)
     val greeting = if p.isOp then "Welcome back, Admin!" else "Hello!"
     info(s"§e${p.getName} joined - $greeting")
-
-  // ============ Command with Pattern Matching ============
-  class ScalaCommand extends CommandExecutor:
-    override def onCommand(sender: CommandSender, cmd: Command, 
-                           label: String, args: Array[String]): Boolean =
-      // Scala 3: match on array patterns
-      args.toList match
-        case Nil => 
-          sender.sendMessage("§aScala 3 plugin is running!")
-        case "info" :: Nil =>
-          sender.sendMessage("§bScala version: 3.3.1")
-          sender.sendMessage("§bFeatures: enums, extensions, opaque types, union types")
-        case "coins" :: amount :: Nil =>
-          Try(amount.toInt) match
-            case Success(n) => 
-              val coins = Coins(n)
-              sender.sendMessage(s"§aYou have ${coins.display}")
-            case Failure(_) => 
-              sender.sendMessage("§cInvalid amount!")
-        case "rank" :: name :: Nil =>
-          // Using Scala 3 enum valueOf
-          Try(Rank.valueOf(name.capitalize)) match
-            case Success(rank) => sender.sendMessage(s"§aRank: ${rank.prefix}")
-            case Failure(_) => sender.sendMessage("§cUnknown rank!")
-        case _ =>
-          sender.sendMessage("§cUsage: /scala [info|coins <n>|rank <name>]")
-      true
@@ -0,0 +1,178 @@
+package dev.nailed.bukkit.scala.maven;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.*;
+import java.util.*;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+
+/**
+ * Read-only view of compiled classes on a build classpath.
+ *
+ * Classes are looked up by internal name (e.g. {@code com/example/MyPlugin}) in
+ * output directories and dependency JARs, and parsed on demand with ASM
+ * (signatures only, no method bodies). Results are cached.
+ */
+class ClassHierarchy implements Closeable {
+
+    /**
+     * A field or method declaration.
+     */
+    static final class Member {
+        final String name;
+        final String descriptor;
+        final int access;
+
+        Member(String name, String descriptor, int access) {
+            this.name = name;
+            this.descriptor = descriptor;
+            this.access = access;
+        }
+
+        boolean isPublic() {
+            return (access & Opcodes.ACC_PUBLIC) != 0;
+        }
+
+        boolean isStatic() {
+            return (access & Opcodes.ACC_STATIC) != 0;
+        }
+    }
+
+    /**
+     * Declaration-level view of one class.
+     */
+    static final class ClassInfo {
+        final String name;
+        final String superName;
+        final String[] interfaces;
+        final List<Member> fields = new ArrayList<>();
+        final List<Member> methods = new ArrayList<>();
+
+        ClassInfo(String name, String superName, String[] interfaces) {
+            this.name = name;
+            this.superName = superName;
+            this.interfaces = interfaces != null ? interfaces : new String[0];
+        }
+    }
+
+    private final List<File> directories = new ArrayList<>();
+    private final List<JarFile> jars = new ArrayList<>();
+    private final Map<String, Optional<ClassInfo>> cache = new HashMap<>();
+
+    ClassHierarchy(List<File> classpath) throws IOException {
+        for (File entry : classpath) {
+            if (entry.isDirectory()) {
+                directories.add(entry);
+            } else if (entry.isFile() && entry.getName().endsWith(".jar")) {
+                jars.add(new JarFile(entry));
+            }
+        }
+    }
+
+    /**
+     * Look up a class by internal name.
+     *
+     * @return the class, or null if it is not on the classpath
+     */
+    ClassInfo get(String internalName) throws IOException {
+        Optional<ClassInfo> cached = cache.get(internalName);
+        if (cached != null) return cached.orElse(null);
+
+        byte[] bytes = readClass(internalName);
+        ClassInfo info = bytes != null ? parse(bytes) : null;
+        cache.put(internalName, Optional.ofNullable(info));
+        return info;
+    }
+
+    /**
+     * Read the raw class file bytes for an internal name.
+     *
+     * @return the bytes, or null if the class is not on the classpath
+     */
+    byte[] readClass(String internalName) throws IOException {
+        String path = internalName + ".class";
+        for (File dir : directories) {
+            File file = new File(dir, path);
+            if (file.isFile()) {
+                try (InputStream in = new FileInputStream(file)) {
+                    return readAll(in);
+                }
+            }
+        }
+        for (JarFile jar : jars) {
+            ZipEntry entry = jar.getEntry(path);
+            if (entry != null) {
+                try (InputStream in = jar.getInputStream(entry)) {
+                    return readAll(in);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether {@code internalName} is, extends or implements {@code target}.
+     * Unknown classes in the hierarchy are treated as not matching.
+     */
+    boolean isSubtypeOf(String internalName, String target) throws IOException {
+        if (internalName == null) return false;
+        if (internalName.equals(target)) return true;
+
+        ClassInfo info = get(internalName);
+        if (info == null) return false;
+
+        for (String itf : info.interfaces) {
+            if (isSubtypeOf(itf, target)) return true;
+        }
+        return isSubtypeOf(info.superName, target);
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (JarFile jar : jars) {
+            jar.close();
+        }
+        jars.clear();
+    }
+
+    private static ClassInfo parse(byte[] bytes) {
+        final ClassInfo[] result = new ClassInfo[1];
+        new ClassReader(bytes).accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public void visit(int version, int access, String name, String signature,
+                              String superName, String[] interfaces) {
+                result[0] = new ClassInfo(name, superName, interfaces);
+            }
+
+            @Override
+            public FieldVisitor visitField(int access, String name, String descriptor,
+                                           String signature, Object value) {
+                result[0].fields.add(new Member(name, descriptor, access));
+                return null;
+            }
+
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor,
+                                             String signature, String[] exceptions) {
+                result[0].methods.add(new Member(name, descriptor, access));
+                return null;
+            }
+        }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        return result[0];
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int len;
+        while ((len = in.read(buffer)) > 0) {
+            out.write(buffer, 0, len);
+        }
+        return out.toByteArray();
+    }
+}
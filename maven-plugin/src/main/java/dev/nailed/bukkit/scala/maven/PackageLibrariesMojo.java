@@ -0,0 +1,184 @@
+package dev.nailed.bukkit.scala.maven;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Packages runtime dependencies as nested JARs under META-INF/lib/ of the plugin JAR.
+ *
+ * Replaces shading for libraries such as cats-effect or circe: each dependency JAR is
+ * added unchanged and STORED (uncompressed), so ScalaPluginClassLoader can memory-map
+ * it straight out of the plugin JAR. Runs at the end of the package phase - declare it
+ * after maven-shade-plugin so the shaded JAR is the one that gets the libraries.
+ *
+ * Provided-scope dependencies, the SDK itself and the Scala library (downloaded at runtime)
+ * are never packaged.
+ */
+@Mojo(name = "package-libraries", defaultPhase = LifecyclePhase.PACKAGE,
+      requiresDependencyResolution = ResolutionScope.RUNTIME)
+public class PackageLibrariesMojo extends AbstractMojo {
+
+    private static final String LIB_PREFIX = "META-INF/lib/";
+
+    // groupId:artifactId, "*" as artifactId matches the whole group
+    private static final List<String> ALWAYS_EXCLUDED = Arrays.asList(
+        "dev.nailed:bukkit-scala-sdk",
+        "org.scala-lang:*"
+    );
+
+    @Parameter(defaultValue = "${project}", readonly = true, required = true)
+    private MavenProject project;
+
+    /**
+     * Additional dependencies to leave out, as groupId:artifactId (artifactId may be *).
+     */
+    @Parameter
+    private List<String> excludes = new ArrayList<>();
+
+    @Parameter(property = "bukkit-scala.skipLibraries", defaultValue = "false")
+    private boolean skip;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        if (skip) return;
+
+        File jar = new File(project.getBuild().getDirectory(), project.getBuild().getFinalName() + ".jar");
+        if (!jar.isFile()) {
+            throw new MojoExecutionException("Plugin JAR not found: " + jar + " (run after the jar/shade plugins)");
+        }
+
+        Map<String, File> libraries = new TreeMap<>();
+        for (Object o : project.getArtifacts()) {
+            Artifact artifact = (Artifact) o;
+            if (!isPackaged(artifact)) continue;
+            File file = artifact.getFile();
+            if (file == null || !file.isFile()) continue;
+            libraries.put(LIB_PREFIX + file.getName(), file);
+        }
+
+        if (libraries.isEmpty()) {
+            getLog().info("No runtime libraries to package");
+            return;
+        }
+
+        try {
+            rewriteJar(jar, libraries, name -> name.startsWith(LIB_PREFIX) && name.endsWith(".jar"));
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to package libraries into " + jar, e);
+        }
+        for (String name : libraries.keySet()) {
+            getLog().info("Packaged " + name);
+        }
+    }
+
+    /**
+     * Whether a dependency ends up in the plugin JAR (shaded or packaged): a compile or
+     * runtime scope JAR. {@code shrink-runtime} walks the same set.
+     */
+    static boolean isBundledScope(Artifact artifact) {
+        String scope = artifact.getScope();
+        return (Artifact.SCOPE_COMPILE.equals(scope) || Artifact.SCOPE_RUNTIME.equals(scope))
+            && "jar".equals(artifact.getType());
+    }
+
+    private boolean isPackaged(Artifact artifact) {
+        if (!isBundledScope(artifact)) return false;
+
+        List<String> all = new ArrayList<>(ALWAYS_EXCLUDED);
+        all.addAll(excludes);
+        for (String exclude : all) {
+            String[] parts = exclude.split(":");
+            if (parts.length != 2) continue;
+            if (parts[0].equals(artifact.getGroupId())
+                    && (parts[1].equals("*") || parts[1].equals(artifact.getArtifactId()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copy the JAR, dropping entries matched by {@code replaced} and adding the given files as
+     * STORED entries. Kept entries keep their method, so nested JARs written STORED by an earlier
+     * goal stay mappable.
+     */
+    static void rewriteJar(File jar, Map<String, File> storedEntries, Predicate<String> replaced) throws IOException {
+        File temp = new File(jar.getParentFile(), jar.getName() + ".libs.tmp");
+
+        try (ZipFile in = new ZipFile(jar);
+             ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            byte[] buffer = new byte[65536];
+
+            Enumeration<? extends ZipEntry> entries = in.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (replaced.test(entry.getName())) continue;
+
+                ZipEntry copy = new ZipEntry(entry.getName());
+                copy.setTime(entry.getTime());
+                if (entry.getMethod() == ZipEntry.STORED) {
+                    copy.setMethod(ZipEntry.STORED);
+                    copy.setSize(entry.getSize());
+                    copy.setCompressedSize(entry.getSize());
+                    copy.setCrc(entry.getCrc());
+                }
+                out.putNextEntry(copy);
+                try (InputStream data = in.getInputStream(entry)) {
+                    copyStream(data, out, buffer);
+                }
+                out.closeEntry();
+            }
+
+            for (Map.Entry<String, File> library : storedEntries.entrySet()) {
+                File file = library.getValue();
+                ZipEntry stored = new ZipEntry(library.getKey());
+                stored.setMethod(ZipEntry.STORED);
+                stored.setSize(file.length());
+                stored.setCompressedSize(file.length());
+                stored.setCrc(crc32(file, buffer));
+                stored.setTime(file.lastModified());
+
+                out.putNextEntry(stored);
+                try (InputStream data = new FileInputStream(file)) {
+                    copyStream(data, out, buffer);
+                }
+                out.closeEntry();
+            }
+        }
+
+        Files.move(temp.toPath(), jar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static long crc32(File file, byte[] buffer) throws IOException {
+        CRC32 crc = new CRC32();
+        try (InputStream in = new FileInputStream(file)) {
+            int len;
+            while ((len = in.read(buffer)) > 0) {
+                crc.update(buffer, 0, len);
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static void copyStream(InputStream in, OutputStream out, byte[] buffer) throws IOException {
+        int len;
+        while ((len = in.read(buffer)) > 0) {
+            out.write(buffer, 0, len);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package dev.nailed.bukkit.scala.maven;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Decides at build time how the bootstrap injects the JavaPlugin into the Scala main class.
+ *
+ * Runs after compilation, inspects the compiled main class and its hierarchy, and writes
+ * META-INF/bukkit-scala/injection.properties with the single injection path that works.
+ * ScalaBootstrap then performs exactly that injection instead of probing setters and
+ * fields at server startup. Fails the build if no injection path exists.
+ */
+@Mojo(name = "plan-injection", defaultPhase = LifecyclePhase.PROCESS_CLASSES,
+      requiresDependencyResolution = ResolutionScope.COMPILE)
+public class PlanInjectionMojo extends AbstractMojo {
+
+    static final String PLAN_RESOURCE = "META-INF/bukkit-scala/injection.properties";
+
+    private static final String LIFECYCLE_BRIDGE = "dev/nailed/bukkit/scala/ScalaPluginLifecycle";
+    private static final String JAVA_PLUGIN_DESC = "Lorg/bukkit/plugin/java/JavaPlugin;";
+    private static final String SETTER_DESC = "(" + JAVA_PLUGIN_DESC + ")V";
+
+    // Field types a JavaPlugin can be assigned to
+    private static final List<String> PLUGIN_FIELD_DESCS = java.util.Arrays.asList(
+        JAVA_PLUGIN_DESC,
+        "Lorg/bukkit/plugin/PluginBase;",
+        "Lorg/bukkit/plugin/Plugin;",
+        "Ljava/lang/Object;"
+    );
+
+    // Same candidates, in the same order, as ScalaBootstrap's runtime fallback
+    private static final String[] SETTER_NAMES = {
+        "_plugin_$eq",
+        "dev$nailed$bukkit$scala$BukkitPlugin$_setter_$_plugin_$eq",
+        "setPlugin"
+    };
+    private static final String[] FIELD_NAMES = {
+        "_plugin",
+        "plugin",
+        "dev$nailed$bukkit$scala$BukkitPlugin$$_plugin"
+    };
+
+    @Parameter(defaultValue = "${project}", readonly = true, required = true)
+    private MavenProject project;
+
+    @Parameter(defaultValue = "${project.basedir}/src/main/resources/plugin.yml", required = true)
+    private File pluginYml;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        if (!pluginYml.exists()) {
+            getLog().warn("plugin.yml not found: " + pluginYml.getAbsolutePath());
+            return;
+        }
+
+        String mainClass = readMainClass(pluginYml);
+        String internalName = mainClass.replace('.', '/');
+
+        List<File> classpath = new ArrayList<>();
+        try {
+            for (Object element : project.getCompileClasspathElements()) {
+                classpath.add(new File(element.toString()));
+            }
+        } catch (Exception e) {
+            throw new MojoExecutionException("Cannot resolve compile classpath", e);
+        }
+
+        Properties plan;
+        try (ClassHierarchy hierarchy = new ClassHierarchy(classpath)) {
+            if (hierarchy.get(internalName) == null) {
+                throw new MojoExecutionException("Compiled main class not found: " + mainClass);
+            }
+            plan = planInjection(hierarchy, internalName);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to inspect " + mainClass, e);
+        }
+
+        if (plan == null) {
+            throw new MojoExecutionException(mainClass + " has no way to receive the JavaPlugin instance. "
+                + "Extend dev.nailed.bukkit.scala.BukkitPlugin, or declare a public setPlugin(JavaPlugin) "
+                + "method or a JavaPlugin field.");
+        }
+        plan.setProperty("main", mainClass);
+
+        try {
+            writePlan(plan);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to write injection plan", e);
+        }
+        getLog().info("Injection plan for " + mainClass + ": " + plan.getProperty("strategy")
+            + (plan.containsKey("member") ? " " + plan.getProperty("member") : ""));
+    }
+
+    /**
+     * The Scala main class named in the source plugin.yml.
+     */
+    static String readMainClass(File pluginYml) throws MojoExecutionException {
+        Map<String, Object> pluginConfig;
+        try (InputStream is = new FileInputStream(pluginYml)) {
+            pluginConfig = new Yaml().load(is);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to read " + pluginYml, e);
+        }
+
+        String mainClass = pluginConfig != null ? (String) pluginConfig.get("main") : null;
+        if (mainClass == null || mainClass.isEmpty()) {
+            throw new MojoExecutionException("plugin.yml missing 'main' field");
+        }
+        return mainClass;
+    }
+
+    /**
+     * Pick the first injection path that will succeed at runtime.
+     *
+     * @return plan properties (strategy, member, owner), or null if none applies
+     */
+    static Properties planInjection(ClassHierarchy hierarchy, String mainClass) throws IOException {
+        Properties plan = new Properties();
+
+        // 1. Lifecycle bridge (BukkitPlugin) - a direct interface call
+        if (hierarchy.isSubtypeOf(mainClass, LIFECYCLE_BRIDGE)) {
+            plan.setProperty("strategy", "bridge");
+            return plan;
+        }
+
+        // 2. Public setter anywhere in the hierarchy
+        for (String setter : SETTER_NAMES) {
+            if (findPublicMethod(hierarchy, mainClass, setter, SETTER_DESC) != null) {
+                plan.setProperty("strategy", "method");
+                plan.setProperty("member", setter);
+                return plan;
+            }
+        }
+
+        // 3. Field with a known name, nearest declaration first
+        for (String fieldName : FIELD_NAMES) {
+            String owner = findField(hierarchy, mainClass, fieldName);
+            if (owner != null) {
+                plan.setProperty("strategy", "field");
+                plan.setProperty("member", fieldName);
+                plan.setProperty("owner", owner.replace('/', '.'));
+                return plan;
+            }
+        }
+
+        // 4. Any instance field of type JavaPlugin
+        for (String current = mainClass; current != null && !current.equals("java/lang/Object"); ) {
+            ClassHierarchy.ClassInfo info = hierarchy.get(current);
+            if (info == null) break;
+            for (ClassHierarchy.Member field : info.fields) {
+                if (!field.isStatic() && JAVA_PLUGIN_DESC.equals(field.descriptor)) {
+                    plan.setProperty("strategy", "field");
+                    plan.setProperty("member", field.name);
+                    plan.setProperty("owner", current.replace('/', '.'));
+                    return plan;
+                }
+            }
+            current = info.superName;
+        }
+
+        return null;
+    }
+
+    private static String findPublicMethod(ClassHierarchy hierarchy, String className,
+                                           String name, String descriptor) throws IOException {
+        if (className == null) return null;
+        ClassHierarchy.ClassInfo info = hierarchy.get(className);
+        if (info == null) return null;
+
+        for (ClassHierarchy.Member method : info.methods) {
+            if (method.isPublic() && !method.isStatic()
+                    && method.name.equals(name) && method.descriptor.equals(descriptor)) {
+                return className;
+            }
+        }
+
+        // Class.getMethod also finds public default methods of interfaces
+        String found = findPublicMethod(hierarchy, info.superName, name, descriptor);
+        if (found != null) return found;
+        for (String itf : info.interfaces) {
+            found = findPublicMethod(hierarchy, itf, name, descriptor);
+            if (found != null) return found;
+        }
+        return null;
+    }
+
+    private static String findField(ClassHierarchy hierarchy, String className, String name) throws IOException {
+        for (String current = className; current != null && !current.equals("java/lang/Object"); ) {
+            ClassHierarchy.ClassInfo info = hierarchy.get(current);
+            if (info == null) return null;
+            for (ClassHierarchy.Member field : info.fields) {
+                if (!field.isStatic() && field.name.equals(name)
+                        && PLUGIN_FIELD_DESCS.contains(field.descriptor)) {
+                    return current;
+                }
+            }
+            current = info.superName;
+        }
+        return null;
+    }
+
+    private void writePlan(Properties plan) throws IOException {
+        Path target = Paths.get(project.getBuild().getOutputDirectory(), PLAN_RESOURCE);
+        Files.createDirectories(target.getParent());
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(target.toFile()), StandardCharsets.UTF_8)) {
+            plan.store(writer, "Generated by bukkit-scala-maven-plugin - do not edit");
+        }
+    }
+}
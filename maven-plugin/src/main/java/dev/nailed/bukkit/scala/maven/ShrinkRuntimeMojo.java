@@ -0,0 +1,297 @@
+package dev.nailed.bukkit.scala.maven;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.commons.ClassRemapper;
+import org.objectweb.asm.commons.Remapper;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Bundles a minimized Scala runtime into the plugin JAR (opt-in).
+ *
+ * Starting from the Scala main class, every plugin class that is an event listener or
+ * command executor, and the keep-rules, follows class references through the plugin,
+ * its bundled libraries and the Scala library JARs. Only the Scala library classes that
+ * are reached are written to META-INF/bukkit-scala/scala-runtime.jar (plus the library
+ * resources, e.g. library.properties), which is added STORED to the plugin JAR.
+ *
+ * ScalaBootstrap sees the bundled runtime and maps it from the plugin JAR instead of
+ * downloading the full Scala libraries, so a shrunk plugin boots without network access.
+ *
+ * The analysis works on classes, not methods, and cannot see reflection: a class that is
+ * only loaded by name (Class.forName, ServiceLoader, configuration) needs a keep-rule.
+ * Keep-rules use Java names:
+ * - {@code scala.util.Try} keeps the class and its nested/companion classes ({@code Try$...})
+ * - {@code scala.concurrent.*} keeps the classes directly in a package
+ * - {@code scala.collection.**} keeps a package and all of its subpackages
+ *
+ * Runs in the package phase; declare it after maven-shade-plugin. With {@code package-libraries},
+ * either order works: each goal replaces only its own entries and copies the other's STORED.
+ */
+@Mojo(name = "shrink-runtime", defaultPhase = LifecyclePhase.PACKAGE,
+      requiresDependencyResolution = ResolutionScope.RUNTIME)
+public class ShrinkRuntimeMojo extends AbstractMojo {
+
+    static final String RUNTIME_ENTRY = "META-INF/bukkit-scala/scala-runtime.jar";
+
+    private static final List<String> SCALA_LIBRARIES = Arrays.asList("scala-library", "scala3-library_3");
+
+    // Reached from compiler-generated code in ways the analysis may miss (lambda deserialization,
+    // boxing helpers called by name), and small enough to always ship
+    private static final List<String> DEFAULT_KEEPS = Collections.singletonList("scala.runtime.**");
+
+    // Interfaces whose implementations Bukkit calls into
+    private static final List<String> ENTRY_POINTS = Arrays.asList(
+        "org/bukkit/event/Listener",
+        "org/bukkit/command/CommandExecutor",
+        "org/bukkit/command/TabCompleter"
+    );
+
+    @Parameter(defaultValue = "${project}", readonly = true, required = true)
+    private MavenProject project;
+
+    @Parameter(defaultValue = "${project.basedir}/src/main/resources/plugin.yml", required = true)
+    private File pluginYml;
+
+    /**
+     * Additional classes to keep, e.g. {@code scala.collection.immutable.**}.
+     */
+    @Parameter
+    private List<String> keeps = new ArrayList<>();
+
+    @Parameter(property = "bukkit-scala.skipShrink", defaultValue = "false")
+    private boolean skip;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        if (skip) return;
+
+        File jar = new File(project.getBuild().getDirectory(), project.getBuild().getFinalName() + ".jar");
+        if (!jar.isFile()) {
+            throw new MojoExecutionException("Plugin JAR not found: " + jar + " (run after the jar/shade plugins)");
+        }
+
+        List<File> scalaJars = new ArrayList<>();
+        List<File> classpath = new ArrayList<>();
+        classpath.add(new File(project.getBuild().getOutputDirectory()));
+        for (Object o : project.getArtifacts()) {
+            Artifact artifact = (Artifact) o;
+            File file = artifact.getFile();
+            if (file == null || !file.isFile() || !"jar".equals(artifact.getType())) continue;
+
+            if ("org.scala-lang".equals(artifact.getGroupId()) && SCALA_LIBRARIES.contains(artifact.getArtifactId())) {
+                scalaJars.add(file);
+                classpath.add(file);
+            } else if (PackageLibrariesMojo.isBundledScope(artifact)) {
+                // Shaded or packaged with the plugin (runtime scope included), so its Scala references count
+                classpath.add(file);
+            }
+        }
+        if (scalaJars.isEmpty()) {
+            throw new MojoExecutionException("No Scala library dependency found - add org.scala-lang:scala3-library_3");
+        }
+
+        String mainClass = PlanInjectionMojo.readMainClass(pluginYml);
+        List<String> rules = new ArrayList<>(DEFAULT_KEEPS);
+        rules.addAll(keeps);
+
+        File runtimeJar = new File(project.getBuild().getDirectory(), "scala-runtime-shrunk.jar");
+        int total;
+        Set<String> kept;
+        try (ClassHierarchy hierarchy = new ClassHierarchy(classpath)) {
+            if (hierarchy.get(mainClass.replace('.', '/')) == null) {
+                throw new MojoExecutionException("Compiled main class not found: " + mainClass);
+            }
+            Map<String, File> scalaClasses = listClasses(scalaJars);
+            total = scalaClasses.size();
+
+            Set<String> roots = new LinkedHashSet<>();
+            roots.add(mainClass.replace('.', '/'));
+            roots.addAll(entryPoints(hierarchy, new File(project.getBuild().getOutputDirectory())));
+            for (String name : scalaClasses.keySet()) {
+                if (matchesKeep(name, rules)) roots.add(name);
+            }
+
+            kept = reachable(hierarchy, roots, scalaClasses.keySet());
+            writeRuntimeJar(runtimeJar, scalaJars, kept);
+
+            PackageLibrariesMojo.rewriteJar(jar, Collections.singletonMap(RUNTIME_ENTRY, runtimeJar),
+                RUNTIME_ENTRY::equals);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to shrink the Scala runtime", e);
+        }
+
+        getLog().info("Bundled Scala runtime: " + kept.size() + " of " + total + " classes, "
+            + runtimeJar.length() / 1024 + " KB");
+    }
+
+    /**
+     * Plugin classes (from the output directory) that Bukkit calls into directly.
+     */
+    private static List<String> entryPoints(ClassHierarchy hierarchy, File outputDirectory) throws IOException {
+        List<String> result = new ArrayList<>();
+        List<File> pending = new ArrayList<>(Collections.singletonList(outputDirectory));
+        while (!pending.isEmpty()) {
+            File dir = pending.remove(pending.size() - 1);
+            File[] files = dir.listFiles();
+            if (files == null) continue;
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    pending.add(file);
+                    continue;
+                }
+                if (!file.getName().endsWith(".class")) continue;
+
+                String path = outputDirectory.toURI().relativize(file.toURI()).getPath();
+                String name = path.substring(0, path.length() - ".class".length());
+                for (String entryPoint : ENTRY_POINTS) {
+                    if (hierarchy.isSubtypeOf(name, entryPoint)) {
+                        result.add(name);
+                        break;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Follow class references from {@code roots} and return the reached classes of {@code scalaClasses}.
+     * Classes outside the hierarchy's classpath (JDK, Bukkit) end the walk.
+     */
+    static Set<String> reachable(ClassHierarchy hierarchy, Collection<String> roots, Set<String> scalaClasses) throws IOException {
+        Set<String> kept = new TreeSet<>();
+        Set<String> visited = new HashSet<>();
+        Deque<String> queue = new ArrayDeque<>(roots);
+
+        while (!queue.isEmpty()) {
+            String name = queue.poll();
+            if (!visited.add(name)) continue;
+
+            byte[] bytes = hierarchy.readClass(name);
+            if (bytes == null) continue;
+            if (scalaClasses.contains(name)) kept.add(name);
+
+            for (String reference : references(bytes)) {
+                if (!visited.contains(reference)) queue.add(reference);
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Every class named by a class file: supertypes, signatures, instructions, constants,
+     * annotations and invokedynamic handles. The InnerClasses and NestMembers attributes are
+     * skipped - they list every nested class of the outer class whether used or not.
+     */
+    private static Set<String> references(byte[] bytes) {
+        final Set<String> references = new HashSet<>();
+        Remapper collector = new Remapper() {
+            @Override
+            public String map(String internalName) {
+                if (internalName.charAt(0) != '[') references.add(internalName);
+                return internalName;
+            }
+        };
+        ClassVisitor visitor = new ClassRemapper(new ClassWriter(0), collector) {
+            @Override
+            public void visitInnerClass(String name, String outerName, String innerName, int access) {
+                // Not a use
+            }
+
+            @Override
+            public void visitNestMember(String nestMember) {
+                // Not a use either
+            }
+        };
+        new ClassReader(bytes).accept(visitor, 0);
+        return references;
+    }
+
+    /**
+     * Class files of the given JARs, internal name to JAR. The first JAR wins on duplicates.
+     */
+    private static Map<String, File> listClasses(List<File> jars) throws IOException {
+        Map<String, File> classes = new HashMap<>();
+        for (File jar : jars) {
+            try (ZipFile zip = new ZipFile(jar)) {
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    String name = entries.nextElement().getName();
+                    if (!name.endsWith(".class") || name.startsWith("META-INF/")) continue;
+                    classes.putIfAbsent(name.substring(0, name.length() - ".class".length()), jar);
+                }
+            }
+        }
+        return classes;
+    }
+
+    static boolean matchesKeep(String internalName, List<String> rules) {
+        String name = internalName.replace('/', '.');
+        for (String rule : rules) {
+            rule = rule.trim();
+            if (rule.endsWith(".**")) {
+                String pkg = rule.substring(0, rule.length() - 2);
+                if (name.startsWith(pkg)) return true;
+            } else if (rule.endsWith(".*")) {
+                String pkg = rule.substring(0, rule.length() - 1);
+                if (name.startsWith(pkg) && name.indexOf('.', pkg.length()) < 0) return true;
+            } else if (name.equals(rule) || name.startsWith(rule + "$")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Write the kept classes and all non-class resources of the Scala JARs.
+     */
+    private static void writeRuntimeJar(File target, List<File> scalaJars, Set<String> kept) throws IOException {
+        Set<String> written = new HashSet<>();
+        byte[] buffer = new byte[65536];
+
+        try (ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(target)))) {
+            for (File jar : scalaJars) {
+                try (ZipFile zip = new ZipFile(jar)) {
+                    Enumeration<? extends ZipEntry> entries = zip.entries();
+                    while (entries.hasMoreElements()) {
+                        ZipEntry entry = entries.nextElement();
+                        String name = entry.getName();
+                        if (entry.isDirectory() || name.startsWith("META-INF/")) continue;
+                        if (name.endsWith(".class")) {
+                            if (!kept.contains(name.substring(0, name.length() - ".class".length()))) continue;
+                        } else if (name.endsWith(".tasty")) {
+                            continue; // Compiler metadata, never read at runtime
+                        }
+                        if (!written.add(name)) continue;
+
+                        ZipEntry copy = new ZipEntry(name);
+                        copy.setTime(entry.getTime());
+                        out.putNextEntry(copy);
+                        try (InputStream data = zip.getInputStream(entry)) {
+                            int len;
+                            while ((len = data.read(buffer)) > 0) {
+                                out.write(buffer, 0, len);
+                            }
+                        }
+                        out.closeEntry();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,398 @@
+package dev.nailed.bukkit.scala;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * Fetches Maven artifacts into a local directory.
+ *
+ * - All artifacts are fetched concurrently
+ * - Mirrors are tried in order; {@code file:} mirrors (e.g. ~/.m2/repository) are copied directly
+ * - Interrupted HTTP transfers resume from the {@code .tmp} file with a Range request
+ * - Local copies are channel-to-channel FileChannel.transferFrom; HTTP bodies still pass through
+ *   the JDK's buffer behind {@code Channels.newChannel}, in 1 MB transferFrom chunks
+ * - Every file is verified against the SHA-256 or SHA-1 the mirror publishes; a
+ *   {@code <jar>.sha1} sidecar records the verified digest so later boots can re-check
+ *   the local copy without the network
+ * - Only the holder of the directory lock deletes files or writes sidecars; the sidecar is
+ *   moved into place before its JAR, so a valid JAR never sits next to a stale sidecar
+ *
+ * Mirrors come from {@code -Dbukkit.scala.mirrors=url1,url2,...}; the default is the local
+ * Maven repository (if present) followed by Maven Central.
+ */
+final class ArtifactDownloader {
+
+    private static final String MIRRORS_PROPERTY = "bukkit.scala.mirrors";
+    private static final long TRANSFER_CHUNK = 1L << 20;
+
+    /**
+     * One Maven artifact and where to put it.
+     */
+    static final class Artifact {
+        final String groupPath;
+        final String artifactId;
+        final String version;
+        final File target;
+
+        Artifact(String groupId, String artifactId, String version, File target) {
+            this.groupPath = groupId.replace('.', '/');
+            this.artifactId = artifactId;
+            this.version = version;
+            this.target = target;
+        }
+
+        String path() {
+            return groupPath + "/" + artifactId + "/" + version + "/" + artifactId + "-" + version + ".jar";
+        }
+    }
+
+    private final List<String> mirrors;
+    private final Logger logger;
+
+    ArtifactDownloader(List<String> mirrors, Logger logger) {
+        this.mirrors = mirrors;
+        this.logger = logger;
+    }
+
+    /**
+     * Mirrors from {@code -Dbukkit.scala.mirrors}, or ~/.m2/repository + {@code defaultRemote}.
+     */
+    static List<String> configuredMirrors(String defaultRemote) {
+        List<String> result = new ArrayList<>();
+        String configured = System.getProperty(MIRRORS_PROPERTY);
+        if (configured != null && !configured.trim().isEmpty()) {
+            for (String mirror : configured.split(",")) {
+                if (!mirror.trim().isEmpty()) result.add(stripSlash(mirror.trim()));
+            }
+            return result;
+        }
+
+        File localRepo = new File(System.getProperty("user.home"), ".m2/repository");
+        if (localRepo.isDirectory()) result.add(stripSlash(localRepo.toURI().toString()));
+        result.add(defaultRemote);
+        return result;
+    }
+
+    /**
+     * Make sure every artifact exists in {@code dir} and is verified.
+     * Holds a file lock on the directory so concurrent servers sharing it don't race.
+     */
+    void fetchAll(File dir, List<Artifact> artifacts) throws Exception {
+        List<Artifact> missing = new ArrayList<>();
+        for (Artifact artifact : artifacts) {
+            // Read-only: another server may be installing this artifact right now
+            if (!isValid(artifact, false)) missing.add(artifact);
+        }
+        if (missing.isEmpty()) return;
+
+        File lockFile = new File(dir, ".download.lock");
+        if (!lockFile.exists()) lockFile.createNewFile();
+
+        try (FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.WRITE)) {
+            FileLock fileLock = channel.lock();
+            try {
+                ExecutorService executor = Executors.newFixedThreadPool(missing.size(), r -> {
+                    Thread thread = new Thread(r, "Scala SDK download");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                try {
+                    List<Future<?>> futures = new ArrayList<>();
+                    for (final Artifact artifact : missing) {
+                        futures.add(executor.submit(() -> {
+                            // Double-check after acquiring lock
+                            if (!isValid(artifact, true)) fetch(artifact);
+                            return null;
+                        }));
+                    }
+                    for (Future<?> future : futures) {
+                        try {
+                            future.get();
+                        } catch (ExecutionException e) {
+                            Throwable cause = e.getCause();
+                            throw cause instanceof Exception ? (Exception) cause : e;
+                        }
+                    }
+                } finally {
+                    executor.shutdownNow();
+                }
+            } finally {
+                fileLock.release();
+            }
+        }
+    }
+
+    /**
+     * Whether the local copy exists and matches the digest recorded when it was downloaded.
+     * With {@code repair} (only under the directory lock) a bad copy is deleted, and copies from
+     * older SDK versions (no sidecar) are accepted if they are readable JARs and get a sidecar so
+     * later corruption is caught; without it such copies just count as missing.
+     */
+    private boolean isValid(Artifact artifact, boolean repair) {
+        File target = artifact.target;
+        if (!target.isFile() || target.length() == 0) return false;
+
+        File sidecar = sidecar(target);
+        try {
+            String actual = digest(target, "SHA-1");
+            if (sidecar.isFile()) {
+                String expected = firstToken(new String(Files.readAllBytes(sidecar.toPath()), StandardCharsets.UTF_8));
+                if (actual.equalsIgnoreCase(expected)) return true;
+                if (!repair) return false;
+                logger.warning("[Scala SDK] " + target.getName() + " is corrupt (SHA-1 mismatch), downloading again");
+            } else {
+                if (!repair) return false;
+                ZipDirectory.read(target);
+                writeSidecar(target, actual);
+                return true;
+            }
+        } catch (Exception e) {
+            if (!repair) return false;
+            logger.warning("[Scala SDK] " + target.getName() + " is unreadable (" + e.getMessage() + "), downloading again");
+        }
+
+        target.delete();
+        sidecar.delete();
+        return false;
+    }
+
+    private void fetch(Artifact artifact) throws IOException {
+        File target = artifact.target;
+        File tempFile = new File(target.getParentFile(), target.getName() + ".tmp");
+        IOException lastError = null;
+
+        for (String mirror : mirrors) {
+            String url = mirror + "/" + artifact.path();
+            try {
+                long start = System.nanoTime();
+                if (url.startsWith("file:")) {
+                    copyLocal(url, tempFile);
+                } else {
+                    logger.info("[Scala SDK] Downloading " + target.getName() + " from " + mirror + "...");
+                    downloadHttp(url, tempFile);
+                }
+                verify(url, tempFile);
+
+                // Sidecar first: a JAR in place is always described by its own digest
+                writeSidecar(target, digest(tempFile, "SHA-1"));
+                moveIntoPlace(tempFile, target);
+
+                long nanos = System.nanoTime() - start;
+                ScalaMetrics.artifactFetched(artifact.path(), target.length(), nanos);
+                logger.info("[Scala SDK] Downloaded " + target.getName() + " (" + (target.length() / 1024) + " KB, "
+                    + nanos / 1_000_000 + " ms)");
+                return;
+            } catch (java.io.FileNotFoundException e) {
+                lastError = e;
+                logger.fine("[Scala SDK] " + target.getName() + " not in " + mirror);
+            } catch (IOException e) {
+                lastError = e;
+                logger.warning("[Scala SDK] " + url + " failed: " + e.getMessage());
+            }
+        }
+
+        tempFile.delete();
+        throw new IOException("Could not fetch " + artifact.path() + " from any mirror", lastError);
+    }
+
+    private void copyLocal(String url, File tempFile) throws IOException {
+        File source;
+        try {
+            source = new File(new URL(url).toURI());
+        } catch (Exception e) {
+            throw new IOException("Bad mirror URL: " + url, e);
+        }
+        if (!source.isFile()) throw new java.io.FileNotFoundException(url);
+
+        try (FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE,
+                 StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += out.transferFrom(in, position, size - position);
+            }
+        }
+    }
+
+    private void downloadHttp(String url, File tempFile) throws IOException {
+        long resumeFrom = tempFile.isFile() ? tempFile.length() : 0;
+
+        HttpURLConnection conn = (HttpURLConnection) openConnection(url);
+        try {
+            if (resumeFrom > 0) {
+                conn.setRequestProperty("Range", "bytes=" + resumeFrom + "-");
+            }
+
+            int responseCode = conn.getResponseCode();
+            if (responseCode == 416 && resumeFrom > 0) {
+                // The .tmp file is already complete (or garbage) - verification decides
+                return;
+            }
+            if (responseCode == 200) {
+                resumeFrom = 0; // Server ignored the Range header
+            } else if (responseCode == 404) {
+                throw new java.io.FileNotFoundException(url);
+            } else if (responseCode != 206) {
+                throw new IOException("HTTP " + responseCode);
+            }
+
+            long remaining = conn.getContentLengthLong();
+            long totalSize = remaining >= 0 ? resumeFrom + remaining : -1;
+            if (resumeFrom > 0) {
+                logger.info("[Scala SDK] Resuming at " + (resumeFrom / 1024) + " KB");
+            }
+
+            try (InputStream in = conn.getInputStream();
+                 ReadableByteChannel source = Channels.newChannel(in);
+                 FileChannel out = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                if (resumeFrom == 0) out.truncate(0);
+
+                long position = resumeFrom;
+                int lastProgress = totalSize > 0 ? (int) ((position * 100) / totalSize) : 0;
+                while (true) {
+                    long transferred = out.transferFrom(source, position, TRANSFER_CHUNK);
+                    if (transferred <= 0) break;
+                    position += transferred;
+
+                    if (totalSize > 0) {
+                        int progress = (int) ((position * 100) / totalSize);
+                        if (progress >= lastProgress + 20) {
+                            logger.info("[Scala SDK] " + tempFile.getName() + ": " + progress + "%");
+                            lastProgress = progress;
+                        }
+                    }
+                }
+                if (totalSize > 0 && position != totalSize) {
+                    throw new IOException("Transfer ended at " + position + " of " + totalSize + " bytes");
+                }
+            }
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    /**
+     * Check the downloaded file against the published SHA-256, falling back to SHA-1.
+     */
+    private void verify(String url, File file) throws IOException {
+        String[][] algorithms = { { "sha256", "SHA-256" }, { "sha1", "SHA-1" } };
+        for (String[] algorithm : algorithms) {
+            String expected = fetchChecksum(url + "." + algorithm[0]);
+            if (expected == null) continue;
+
+            String actual = digest(file, algorithm[1]);
+            if (!actual.equalsIgnoreCase(expected)) {
+                file.delete(); // Don't resume from a corrupt file
+                throw new IOException(algorithm[1] + " mismatch (expected " + expected + ", got " + actual + ")");
+            }
+            return;
+        }
+
+        // Some local repositories have no checksum files - at least make sure it is a JAR
+        ZipDirectory.read(file);
+        logger.warning("[Scala SDK] No checksum published for " + url + " - accepted without verification");
+    }
+
+    private String fetchChecksum(String url) {
+        try {
+            URLConnection conn = openConnection(url);
+            if (conn instanceof HttpURLConnection && ((HttpURLConnection) conn).getResponseCode() != 200) {
+                return null;
+            }
+            try (InputStream in = conn.getInputStream()) {
+                byte[] buffer = new byte[256];
+                int length = 0;
+                int read;
+                while (length < buffer.length && (read = in.read(buffer, length, buffer.length - length)) > 0) {
+                    length += read;
+                }
+                String value = firstToken(new String(buffer, 0, length, StandardCharsets.US_ASCII));
+                return value.isEmpty() ? null : value;
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static URLConnection openConnection(String url) throws IOException {
+        URLConnection conn = new URL(url).openConnection();
+        conn.setConnectTimeout(30000);
+        conn.setReadTimeout(60000);
+        conn.setRequestProperty("User-Agent", "Bukkit-Scala-SDK/1.0");
+        return conn;
+    }
+
+    private static void moveIntoPlace(File tempFile, File target) throws IOException {
+        try {
+            Files.move(tempFile.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void writeSidecar(File target, String sha1) throws IOException {
+        File sidecar = sidecar(target);
+        File tempFile = new File(sidecar.getParentFile(), sidecar.getName() + ".tmp");
+        Files.write(tempFile.toPath(), sha1.getBytes(StandardCharsets.UTF_8));
+        moveIntoPlace(tempFile, sidecar);
+    }
+
+    static String digest(File file, String algorithm) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(algorithm);
+        } catch (java.security.NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // SHA-1 and SHA-256 are mandatory on every JVM
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buffer = new byte[65536];
+            int len;
+            while ((len = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, len);
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static File sidecar(File target) {
+        return new File(target.getParentFile(), target.getName() + ".sha1");
+    }
+
+    private static String firstToken(String text) {
+        String trimmed = text.trim();
+        int space = 0;
+        while (space < trimmed.length() && !Character.isWhitespace(trimmed.charAt(space))) space++;
+        return trimmed.substring(0, space);
+    }
+
+    private static String stripSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+}
@@ -0,0 +1,160 @@
+package dev.nailed.bukkit.scala;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Recorded class-load profile of a Scala plugin.
+ * 
+ * While profiling is enabled ({@code scala-class-profile: true} in plugin.yml, a
+ * {@code Scala-Class-Profile} manifest attribute, or {@code -Dbukkit.scala.classProfile=true}),
+ * the bootstrap records the classes its ScalaPluginClassLoader loads during onLoad and onEnable
+ * and stores them in the data folder. On the next boots the profile is preloaded on a fork-join
+ * pool while the server loads other plugins, so onEnable finds the classes already defined.
+ * 
+ * A boot either preloads or records, never both: preloaded classes would be recorded again in
+ * fork-join order, and classes no longer used would never leave the profile. The profile is
+ * tagged with the plugin version and re-recorded after an update, or when it names classes that
+ * no longer exist.
+ * 
+ * Preloading only defines classes: it neither links nor initializes them, so member types (e.g.
+ * a field typed by an optional dependency) are not resolved early and static initializers still
+ * run in the normal order on the thread that first uses each class.
+ */
+final class ClassLoadProfile {
+    
+    static final String FILE_NAME = ".scala-classes.profile";
+    
+    private static final String VERSION_HEADER = "# version=";
+    private static final int CHUNK_SIZE = 64;
+    
+    private ClassLoadProfile() {}
+    
+    /**
+     * Read a recorded profile.
+     * 
+     * @return class names in load order, or null if there is no profile for this plugin version
+     */
+    static List<String> read(File file, String pluginVersion) {
+        if (!file.isFile()) return null;
+        
+        List<String> names = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String header = reader.readLine();
+            if (header == null || !header.equals(VERSION_HEADER + pluginVersion)) return null;
+            
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty() && !line.startsWith("#")) names.add(line);
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return names;
+    }
+    
+    /**
+     * Write a recorded profile, keeping first-load order and dropping JDK classes.
+     */
+    static void write(File file, String pluginVersion, Collection<String> names) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists()) dir.mkdirs();
+        
+        File temp = new File(dir, file.getName() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8)) {
+            writer.write(VERSION_HEADER + pluginVersion + "\n");
+            for (String name : new LinkedHashSet<>(names)) {
+                if (isJdkClass(name)) continue;
+                writer.write(name);
+                writer.write('\n');
+            }
+        }
+        if (!temp.renameTo(file)) {
+            file.delete();
+            if (!temp.renameTo(file)) throw new IOException("Cannot replace " + file);
+        }
+    }
+    
+    /**
+     * Load (without linking or initializing) every class in {@code names} on the common fork-join pool.
+     * Classes that no longer exist are skipped, and the profile {@code file} is deleted so the
+     * next boot records a fresh one. A class that exists but cannot be defined here (e.g. its
+     * superclass comes from a missing optional dependency) is skipped without marking the profile stale.
+     */
+    static ForkJoinTask<?> preload(final ClassLoader loader, final List<String> names, final File file, final Logger logger) {
+        final AtomicInteger loaded = new AtomicInteger();
+        final AtomicInteger missing = new AtomicInteger();
+        final long start = System.nanoTime();
+        
+        return ForkJoinPool.commonPool().submit(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(new Chunk(loader, names, 0, names.size(), loaded, missing));
+                logger.fine("[Scala SDK] Preloaded " + loaded.get() + "/" + names.size() + " classes in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+                if (missing.get() > 0 && file.delete()) {
+                    logger.fine("[Scala SDK] Class-load profile is stale; recording a new one on the next boot");
+                }
+            }
+        });
+    }
+    
+    private static final class Chunk extends RecursiveAction {
+        private final ClassLoader loader;
+        private final List<String> names;
+        private final int from;
+        private final int to;
+        private final AtomicInteger loaded;
+        private final AtomicInteger missing;
+        
+        Chunk(ClassLoader loader, List<String> names, int from, int to, AtomicInteger loaded, AtomicInteger missing) {
+            this.loader = loader;
+            this.names = names;
+            this.from = from;
+            this.to = to;
+            this.loaded = loaded;
+            this.missing = missing;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from > CHUNK_SIZE) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Chunk(loader, names, from, mid, loaded, missing),
+                    new Chunk(loader, names, mid, to, loaded, missing));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                try {
+                    Class.forName(names.get(i), false, loader);
+                    loaded.incrementAndGet();
+                } catch (ClassNotFoundException e) {
+                    missing.incrementAndGet(); // Stale entry
+                } catch (LinkageError ignored) {
+                    // Fails the same way on every boot - left to fail lazily as usual
+                }
+            }
+        }
+    }
+    
+    private static boolean isJdkClass(String name) {
+        return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("sun.") || name.startsWith("jdk.");
+    }
+}
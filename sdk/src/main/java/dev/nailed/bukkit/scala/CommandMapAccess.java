@@ -0,0 +1,76 @@
+package dev.nailed.bukkit.scala;
+
+import org.bukkit.Server;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandMap;
+
+import java.lang.reflect.Field;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Registers SDK commands that are not declared in plugin.yml.
+ * 
+ * Bukkit exposes no API for runtime command registration, so the server's CommandMap
+ * is reached reflectively (CraftServer#getCommandMap). Failures are reported as false;
+ * callers treat SDK commands as optional.
+ */
+final class CommandMapAccess {
+    
+    private CommandMapAccess() {}
+    
+    /**
+     * Register {@code command} as {@code /<label>} (if free) and {@code /<fallbackPrefix>:<label>}.
+     */
+    static boolean register(Server server, String fallbackPrefix, Command command) {
+        CommandMap commandMap = commandMap(server);
+        return commandMap != null && commandMap.register(fallbackPrefix, command);
+    }
+    
+    /**
+     * Remove every label that maps to {@code command}.
+     */
+    @SuppressWarnings("unchecked")
+    static void unregister(Server server, Command command) {
+        CommandMap commandMap = commandMap(server);
+        if (commandMap == null) return;
+        
+        command.unregister(commandMap);
+        try {
+            Map<String, Command> known;
+            try {
+                // Paper, and Spigot 1.13+
+                known = (Map<String, Command>) commandMap.getClass().getMethod("getKnownCommands").invoke(commandMap);
+            } catch (NoSuchMethodException e) {
+                Field field = findField(commandMap.getClass(), "knownCommands");
+                if (field == null) return;
+                field.setAccessible(true);
+                known = (Map<String, Command>) field.get(commandMap);
+            }
+            for (Iterator<Command> it = known.values().iterator(); it.hasNext(); ) {
+                if (it.next() == command) it.remove();
+            }
+        } catch (Exception ignored) {
+            // Labels stay registered but the command is marked unregistered
+        }
+    }
+    
+    private static CommandMap commandMap(Server server) {
+        try {
+            return (CommandMap) server.getClass().getMethod("getCommandMap").invoke(server);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+    
+    private static Field findField(Class<?> clazz, String name) {
+        for (Class<?> current = clazz; current != null; current = current.getSuperclass()) {
+            try {
+                return current.getDeclaredField(name);
+            } catch (NoSuchFieldException ignored) {
+                // Keep looking in superclasses
+            }
+        }
+        return null;
+    }
+}
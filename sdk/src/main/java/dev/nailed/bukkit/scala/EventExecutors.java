@@ -0,0 +1,192 @@
+package dev.nailed.bukkit.scala;
+
+import org.bukkit.event.Event;
+import org.bukkit.event.EventException;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.EventExecutor;
+import org.bukkit.plugin.Plugin;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Registers listeners with one generated EventExecutor per handler method.
+ *
+ * PluginManager#registerEvents dispatches every {@code @EventHandler} call through
+ * Method.invoke. Here each handler is spun into a class via LambdaMetafactory that casts
+ * and calls the method directly; the executor adds the instanceof check Bukkit needs for
+ * handler lists shared with subclass events. Handlers are discovered the same way Bukkit
+ * does (public methods including inherited ones, plus all declared methods).
+ *
+ * If any handler of a listener cannot be spun (non-public class or method, static method,
+ * a class the SDK's loader cannot see), the whole listener goes through registerEvents
+ * instead, so a listener is never registered half one way and half the other.
+ */
+final class EventExecutors {
+
+    private static final MethodType HANDLER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType FACTORY_TYPE = MethodType.methodType(BiConsumer.class);
+
+    // Generated handlers are stateless - reuse them for every instance of a listener class
+    private static final Map<Method, BiConsumer<Object, Object>> handlers = new ConcurrentHashMap<>();
+
+    private EventExecutors() {}
+
+    /**
+     * Register every {@code @EventHandler} of {@code listener} for {@code plugin}.
+     *
+     * @return true if generated executors were used, false if Bukkit's reflective path was
+     */
+    static boolean registerEvents(Listener listener, Plugin plugin) {
+        List<Registration> registrations = new ArrayList<>();
+
+        for (Method method : handlerMethods(listener.getClass())) {
+            EventHandler annotation = method.getAnnotation(EventHandler.class);
+            Class<?>[] parameters = method.getParameterTypes();
+            if (parameters.length != 1 || !Event.class.isAssignableFrom(parameters[0])) {
+                // Let Bukkit report the invalid handler the way it always does
+                plugin.getServer().getPluginManager().registerEvents(listener, plugin);
+                return false;
+            }
+
+            BiConsumer<Object, Object> handler = handler(method);
+            if (handler == null) {
+                plugin.getServer().getPluginManager().registerEvents(listener, plugin);
+                return false;
+            }
+
+            Class<? extends Event> eventClass = parameters[0].asSubclass(Event.class);
+            registrations.add(new Registration(eventClass, annotation, new GeneratedExecutor(eventClass, handler, method,
+                ScalaProfiler.ENABLED ? probe(plugin, eventClass, method) : null)));
+        }
+
+        for (Registration registration : registrations) {
+            plugin.getServer().getPluginManager().registerEvent(
+                registration.eventClass,
+                listener,
+                registration.annotation.priority(),
+                registration.executor,
+                plugin,
+                registration.annotation.ignoreCancelled()
+            );
+        }
+        return true;
+    }
+
+    private static ScalaProfiler.Probe probe(Plugin plugin, Class<?> eventClass, Method method) {
+        return ScalaProfiler.probe(plugin.getName(), "event " + eventClass.getSimpleName() + " "
+            + method.getDeclaringClass().getSimpleName() + "#" + method.getName());
+    }
+
+    private static Set<Method> handlerMethods(Class<?> listenerClass) {
+        Set<Method> methods = new LinkedHashSet<>();
+        for (Method method : listenerClass.getMethods()) {
+            if (isHandler(method)) methods.add(method);
+        }
+        for (Method method : listenerClass.getDeclaredMethods()) {
+            if (isHandler(method)) methods.add(method);
+        }
+        return methods;
+    }
+
+    private static boolean isHandler(Method method) {
+        return !method.isBridge() && !method.isSynthetic() && method.isAnnotationPresent(EventHandler.class);
+    }
+
+    /**
+     * {@code (listener, event) -> ((L) listener).method((E) event)}, or null if it cannot be generated.
+     */
+    private static BiConsumer<Object, Object> handler(Method method) {
+        BiConsumer<Object, Object> cached = handlers.get(method);
+        if (cached != null) return cached;
+
+        Class<?> owner = method.getDeclaringClass();
+        if (Modifier.isStatic(method.getModifiers())
+                || !Modifier.isPublic(method.getModifiers())
+                || !Modifier.isPublic(owner.getModifiers())) {
+            return null;
+        }
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle target = lookup.unreflect(method);
+            CallSite site = LambdaMetafactory.metafactory(
+                lookup,
+                "accept",
+                FACTORY_TYPE,
+                HANDLER_TYPE,
+                target,
+                MethodType.methodType(void.class, owner, method.getParameterTypes()[0])
+            );
+            @SuppressWarnings("unchecked")
+            BiConsumer<Object, Object> handler = (BiConsumer<Object, Object>) site.getTarget().invoke();
+            handlers.put(method, handler);
+            return handler;
+        } catch (Throwable t) {
+            // Not visible from our loader, or a JVM without usable LambdaMetafactory
+            return null;
+        }
+    }
+
+    private static final class Registration {
+        final Class<? extends Event> eventClass;
+        final EventHandler annotation;
+        final EventExecutor executor;
+
+        Registration(Class<? extends Event> eventClass, EventHandler annotation, EventExecutor executor) {
+            this.eventClass = eventClass;
+            this.annotation = annotation;
+            this.executor = executor;
+        }
+    }
+
+    /**
+     * Same contract as Bukkit's reflective executor, minus the reflection.
+     */
+    static final class GeneratedExecutor implements EventExecutor {
+
+        private final Class<?> eventClass;
+        private final BiConsumer<Object, Object> handler;
+        private final Method method; // for toString() only
+        private final ScalaProfiler.Probe probe; // null unless profiling
+
+        GeneratedExecutor(Class<?> eventClass, BiConsumer<Object, Object> handler, Method method, ScalaProfiler.Probe probe) {
+            this.eventClass = eventClass;
+            this.handler = handler;
+            this.method = method;
+            this.probe = probe;
+        }
+
+        @Override
+        public void execute(Listener listener, Event event) throws EventException {
+            // Handler lists are shared with subclass events
+            if (!eventClass.isInstance(event)) return;
+            long start = ScalaProfiler.start(probe);
+            try {
+                handler.accept(listener, event);
+            } catch (Throwable t) {
+                throw new EventException(t);
+            } finally {
+                ScalaProfiler.stop(probe, start);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "GeneratedExecutor[" + method.getDeclaringClass().getName() + "#" + method.getName() + "]";
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package dev.nailed.bukkit.scala;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Entry points into a Scala plugin instance, resolved once when the plugin is loaded.
+ * 
+ * If the instance implements {@link ScalaPluginLifecycle} the entry points are direct
+ * interface calls. Otherwise each method is looked up once and bound as a MethodHandle;
+ * missing methods resolve to null instead of being rediscovered (and failing) on every call.
+ */
+final class LifecycleDispatcher {
+    
+    private static final MethodType VOID_NO_ARGS = MethodType.methodType(void.class);
+    
+    private final Object instance;
+    
+    final Runnable onLoad;
+    final Runnable onEnable;
+    final Runnable onDisable;
+    final Runnable shutdown; // null unless bridged
+    
+    LifecycleDispatcher(Object instance) {
+        this.instance = instance;
+        
+        if (instance instanceof ScalaPluginLifecycle) {
+            final ScalaPluginLifecycle bridge = (ScalaPluginLifecycle) instance;
+            this.onLoad = bridge::onLoad;
+            this.onEnable = bridge::onEnable;
+            this.onDisable = bridge::onDisable;
+            this.shutdown = bridge::runShutdownHooks;
+        } else {
+            this.onLoad = hook("onLoad");
+            this.onEnable = hook("onEnable");
+            this.onDisable = hook("onDisable");
+            this.shutdown = null;
+        }
+    }
+    
+    /**
+     * Whether entry points are dispatched through {@link ScalaPluginLifecycle}.
+     */
+    boolean isBridged() {
+        return instance instanceof ScalaPluginLifecycle;
+    }
+    
+    /**
+     * Bind a public no-arg void method of the Scala instance.
+     * Call once and keep the result - e.g. for per-tick hooks.
+     * 
+     * @return the bound entry point, or null if the instance has no such method
+     */
+    Runnable hook(String methodName) {
+        final MethodHandle handle = bind(methodName, VOID_NO_ARGS);
+        if (handle == null) return null;
+        
+        return () -> {
+            try {
+                handle.invokeExact();
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new RuntimeException(t);
+            }
+        };
+    }
+    
+    /**
+     * Look up a public method of the Scala instance and bind it to the instance.
+     * 
+     * @return handle of type {@code type}, or null if the instance has no such method
+     */
+    MethodHandle bind(String methodName, MethodType type) {
+        try {
+            return MethodHandles.publicLookup()
+                .findVirtual(instance.getClass(), methodName, type)
+                .bindTo(instance);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+}
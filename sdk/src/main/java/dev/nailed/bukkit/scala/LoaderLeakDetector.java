@@ -0,0 +1,48 @@
+package dev.nailed.bukkit.scala;
+
+import java.lang.ref.WeakReference;
+import java.util.logging.Logger;
+
+/**
+ * Reports ScalaPluginClassLoaders that stay reachable after their plugin was disabled.
+ * 
+ * A released loader is only held through a WeakReference. A short-lived daemon thread
+ * checks it periodically; once the loader has been collected the thread exits quietly.
+ * If it is still reachable after the last check, something (a static cache, a thread,
+ * a listener registered with another plugin) may still reference the plugin's classes, and
+ * every reload would leak another copy of them. The detector never forces a collection - that
+ * would be a stop-the-world pause on a live server - so on a large heap whose old generation
+ * has not been collected yet the warning can be a false alarm.
+ */
+final class LoaderLeakDetector {
+    
+    private static final long CHECK_INTERVAL_MS = 30_000;
+    private static final int CHECKS = 10;
+    
+    private LoaderLeakDetector() {}
+    
+    static void watch(ClassLoader loader, final String pluginName, final Logger logger) {
+        final WeakReference<ClassLoader> ref = new WeakReference<>(loader);
+        
+        Thread thread = new Thread(() -> {
+            try {
+                for (int i = 0; i < CHECKS; i++) {
+                    Thread.sleep(CHECK_INTERVAL_MS);
+                    if (ref.get() == null) {
+                        logger.fine("[Scala SDK] ClassLoader of " + pluginName + " was unloaded");
+                        return;
+                    }
+                }
+                logger.warning("[Scala SDK] ClassLoader of " + pluginName + " is still reachable after "
+                    + CHECKS + " checks (" + (CHECKS * CHECK_INTERVAL_MS / 60_000) + " minutes after disable) - "
+                    + "something may still reference its classes (static caches, threads, listeners). "
+                    + "If so, reloading leaks memory.");
+            } catch (InterruptedException ignored) {
+                // Server shutting down
+            }
+        }, "Scala SDK leak check (" + pluginName + ")");
+        thread.setDaemon(true);
+        thread.setContextClassLoader(null); // Don't pin anything ourselves
+        thread.start();
+    }
+}
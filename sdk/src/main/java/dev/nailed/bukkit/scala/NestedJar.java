@@ -0,0 +1,257 @@
+package dev.nailed.bukkit.scala;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.security.CodeSource;
+import java.security.cert.Certificate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * A JAR stored inside the plugin JAR (under {@code META-INF/lib/}).
+ *
+ * Stored (uncompressed) nested JARs are memory-mapped straight out of the plugin JAR and
+ * their entries are sliced from the mapping - nothing is extracted to disk or copied onto
+ * the heap except entries that are themselves deflated, which are inflated on demand.
+ * A nested JAR that was deflated as a whole cannot be mapped and is read onto the heap once;
+ * package with the Maven plugin's {@code package-libraries} goal to keep them stored.
+ *
+ * The minimized Scala runtime written by the {@code shrink-runtime} goal is nested the same way.
+ */
+final class NestedJar {
+
+    static final String LIB_PREFIX = "META-INF/lib/";
+    static final String RUNTIME_ENTRY = "META-INF/bukkit-scala/scala-runtime.jar";
+    static final String URL_PROTOCOL = "scala-nested";
+
+    private final String name;
+    private final ByteBuffer data;
+    private final Map<String, ZipDirectory.Entry> entries;
+    private final URL url;
+    private final CodeSource codeSource;
+
+    private NestedJar(String name, ByteBuffer data, Map<String, ZipDirectory.Entry> entries, URL url) {
+        this.name = name;
+        this.data = data;
+        this.entries = entries;
+        this.url = url;
+        this.codeSource = new CodeSource(url, (Certificate[]) null);
+    }
+
+    /**
+     * Whether a plugin JAR entry is a nested JAR: a library or the bundled Scala runtime.
+     */
+    static boolean isNestedJar(String entryName) {
+        return entryName.equals(RUNTIME_ENTRY) 
+            || (entryName.startsWith(LIB_PREFIX) && entryName.endsWith(".jar"));
+    }
+
+    /**
+     * Open a nested JAR entry of {@code outer}.
+     */
+    static NestedJar open(File outer, FileChannel channel, ZipDirectory.Entry entry, URLStreamHandler handler) throws IOException {
+        long offset = ZipDirectory.dataOffset(channel, entry);
+
+        ByteBuffer data;
+        if (entry.method == ZipDirectory.METHOD_STORED) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, offset, entry.size);
+        } else {
+            ByteBuffer compressed = ByteBuffer.allocate((int) entry.compressedSize);
+            while (compressed.hasRemaining()) {
+                if (channel.read(compressed, offset + compressed.position()) < 0) {
+                    throw new IOException("Unexpected end of file in " + entry.name);
+                }
+            }
+            data = ByteBuffer.wrap(inflate(compressed.array(), 0, compressed.capacity(), (int) entry.size, entry.name));
+        }
+        data.order(ByteOrder.LITTLE_ENDIAN);
+
+        Map<String, ZipDirectory.Entry> index = new HashMap<>();
+        for (ZipDirectory.Entry nested : ZipDirectory.read(data, outer.getName() + "!/" + entry.name).entries()) {
+            if (!nested.isDirectory()) index.put(nested.name, nested);
+        }
+
+        URL url = new URL(URL_PROTOCOL, null, -1, outer.getAbsolutePath() + "!/" + entry.name, handler);
+        return new NestedJar(entry.name, data, index, url);
+    }
+
+    /**
+     * Path of this JAR inside the plugin JAR.
+     */
+    String name() {
+        return name;
+    }
+
+    /**
+     * URL of this nested JAR, used as its CodeSource location.
+     */
+    URL url() {
+        return url;
+    }
+
+    /**
+     * CodeSource for classes defined from this JAR.
+     */
+    CodeSource codeSource() {
+        return codeSource;
+    }
+
+    boolean contains(String entryName) {
+        return entries.containsKey(entryName);
+    }
+
+    Set<String> entryNames() {
+        return entries.keySet();
+    }
+
+    /**
+     * Contents of an entry: a read-only view for stored entries, an inflated heap buffer otherwise.
+     *
+     * @return the contents, or null if there is no such entry
+     */
+    ByteBuffer read(String entryName) throws IOException {
+        ZipDirectory.Entry entry = entries.get(entryName);
+        if (entry == null) return null;
+
+        ByteBuffer raw = ZipDirectory.rawData(data, entry);
+        if (entry.method == ZipDirectory.METHOD_STORED) {
+            return raw.asReadOnlyBuffer();
+        }
+        if (entry.method != ZipDirectory.METHOD_DEFLATED) {
+            throw new IOException("Unsupported compression method " + entry.method + " for " + entryName);
+        }
+
+        byte[] compressed;
+        int offset = 0;
+        if (raw.hasArray()) {
+            compressed = raw.array();
+            offset = raw.arrayOffset() + raw.position();
+        } else {
+            compressed = new byte[raw.remaining()];
+            raw.get(compressed);
+        }
+        return ByteBuffer.wrap(inflate(compressed, offset, (int) entry.compressedSize, (int) entry.size, entryName));
+    }
+
+    /**
+     * URL for an entry of this nested JAR.
+     */
+    URL entryUrl(String entryName, URLStreamHandler handler) throws MalformedURLException {
+        return new URL(URL_PROTOCOL, null, -1, url.getPath() + "!/" + entryName, handler);
+    }
+
+    static byte[] inflate(byte[] input, int offset, int length, int size, String name) throws IOException {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(input, offset, length);
+            byte[] output = new byte[size];
+            int total = 0;
+            while (total < size) {
+                int n = inflater.inflate(output, total, size - total);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) break;
+                total += n;
+            }
+            if (total != size) throw new IOException("Truncated entry " + name);
+            return output;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt entry " + name, e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Resolves {@code scala-nested:<plugin jar>!/<nested jar>!/<entry>} URLs for one loader.
+     */
+    static final class Handler extends URLStreamHandler {
+
+        private final Map<String, NestedJar> jars = new java.util.concurrent.ConcurrentHashMap<>();
+
+        void register(NestedJar jar) {
+            jars.put(jar.name(), jar);
+        }
+
+        void clear() {
+            jars.clear();
+        }
+
+        @Override
+        protected URLConnection openConnection(URL u) throws IOException {
+            String path = u.getPath();
+            int second = path.lastIndexOf("!/");
+            int first = path.lastIndexOf("!/", second - 1);
+            if (first < 0 || second < 0) throw new IOException("Not a nested entry URL: " + u);
+
+            final NestedJar jar = jars.get(path.substring(first + 2, second));
+            final String entryName = path.substring(second + 2);
+            if (jar == null || !jar.contains(entryName)) throw new java.io.FileNotFoundException(u.toString());
+
+            return new URLConnection(u) {
+                @Override
+                public void connect() {
+                    connected = true;
+                }
+
+                @Override
+                public InputStream getInputStream() throws IOException {
+                    return new ByteBufferInputStream(jar.read(entryName));
+                }
+
+                @Override
+                public long getContentLengthLong() {
+                    ZipDirectory.Entry entry = jar.entries.get(entryName);
+                    return entry != null ? entry.size : -1;
+                }
+            };
+        }
+    }
+
+    /**
+     * InputStream over a ByteBuffer (no copy for mapped entries).
+     */
+    static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (!buffer.hasRemaining()) return -1;
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
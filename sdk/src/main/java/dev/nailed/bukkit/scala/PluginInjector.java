@@ -0,0 +1,167 @@
+package dev.nailed.bukkit.scala;
+
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * Injects the JavaPlugin instance into a Scala plugin instance.
+ * 
+ * Order:
+ * 1. {@link ScalaPluginLifecycle#setPlugin} - direct call, no reflection (BukkitPlugin)
+ * 2. The injection plan written by the Maven plugin's {@code plan-injection} goal
+ *    (META-INF/bukkit-scala/injection.properties) - exactly one reflective lookup
+ * 3. Legacy scan of setter and field names, for JARs built without a plan
+ */
+final class PluginInjector {
+    
+    static final String PLAN_RESOURCE = "META-INF/bukkit-scala/injection.properties";
+    
+    private final JavaPlugin plugin;
+    private final Logger logger;
+    
+    PluginInjector(JavaPlugin plugin, Logger logger) {
+        this.plugin = plugin;
+        this.logger = logger;
+    }
+    
+    /**
+     * Read the build-time injection plan for {@code mainClass}.
+     * 
+     * @return the plan, or null if the JAR has none (or it was built for another main class)
+     */
+    static Properties loadPlan(ClassLoader loader, String mainClass) {
+        try (InputStream in = loader.getResourceAsStream(PLAN_RESOURCE)) {
+            if (in == null) return null;
+            Properties plan = new Properties();
+            plan.load(in);
+            return mainClass.equals(plan.getProperty("main")) ? plan : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Inject the plugin into {@code instance}.
+     * 
+     * @param plan build-time plan, or null to scan
+     * @return the strategy that succeeded (e.g. "bridge", "method:setPlugin"), or null if none did
+     */
+    String inject(Object instance, Class<?> scalaClass, Properties plan) {
+        if (instance instanceof ScalaPluginLifecycle) {
+            ((ScalaPluginLifecycle) instance).setPlugin(plugin);
+            return "bridge";
+        }
+        
+        if (plan != null) {
+            String strategy = injectPlanned(instance, scalaClass, plan);
+            if (strategy != null) return strategy;
+            logger.warning("[Scala SDK] Injection plan " + plan.getProperty("strategy") + " "
+                + plan.getProperty("member") + " failed - falling back to scanning");
+        }
+        
+        return injectByScanning(instance, scalaClass);
+    }
+    
+    private String injectPlanned(Object instance, Class<?> scalaClass, Properties plan) {
+        String strategy = plan.getProperty("strategy");
+        String member = plan.getProperty("member");
+        try {
+            if ("method".equals(strategy)) {
+                scalaClass.getMethod(member, JavaPlugin.class).invoke(instance, plugin);
+                return "method:" + member;
+            }
+            if ("field".equals(strategy)) {
+                Class<?> owner = Class.forName(plan.getProperty("owner"), false, scalaClass.getClassLoader());
+                Field field = owner.getDeclaredField(member);
+                field.setAccessible(true);
+                field.set(instance, plugin);
+                return "field:" + member;
+            }
+        } catch (Exception e) {
+            logger.fine("[Scala SDK] Planned injection failed: " + e);
+        }
+        return null;
+    }
+    
+    private String injectByScanning(Object instance, Class<?> scalaClass) {
+        // Try Scala 3 setter method: _plugin_$eq(JavaPlugin)
+        if (trySetterMethod(instance, scalaClass, "_plugin_$eq")) return "method:_plugin_$eq";
+        if (trySetterMethod(instance, scalaClass, "dev$nailed$bukkit$scala$BukkitPlugin$_setter_$_plugin_$eq")) {
+            return "method:dev$nailed$bukkit$scala$BukkitPlugin$_setter_$_plugin_$eq";
+        }
+        
+        // Try setPlugin method (user-defined)
+        if (trySetterMethod(instance, scalaClass, "setPlugin")) return "method:setPlugin";
+        
+        // Try field injection (multiple naming conventions)
+        if (tryFieldInjection(instance, scalaClass, "_plugin")) return "field:_plugin";
+        if (tryFieldInjection(instance, scalaClass, "plugin")) return "field:plugin";
+        if (tryFieldInjection(instance, scalaClass, "dev$nailed$bukkit$scala$BukkitPlugin$$_plugin")) {
+            return "field:dev$nailed$bukkit$scala$BukkitPlugin$$_plugin";
+        }
+        
+        // Search all fields for JavaPlugin type
+        return tryFindPluginField(instance, scalaClass);
+    }
+    
+    private boolean trySetterMethod(Object instance, Class<?> clazz, String methodName) {
+        try {
+            Method method = clazz.getMethod(methodName, JavaPlugin.class);
+            method.invoke(instance, plugin);
+            logger.fine("[Scala SDK] Injected via " + methodName + "()");
+            return true;
+        } catch (NoSuchMethodException ignored) {
+            return false;
+        } catch (Exception e) {
+            logger.fine("[Scala SDK] " + methodName + " failed: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    private boolean tryFieldInjection(Object instance, Class<?> clazz, String fieldName) {
+        // Search in class hierarchy
+        Class<?> current = clazz;
+        while (current != null && current != Object.class) {
+            try {
+                Field field = current.getDeclaredField(fieldName);
+                field.setAccessible(true);
+                field.set(instance, plugin);
+                logger.fine("[Scala SDK] Injected via field: " + fieldName);
+                return true;
+            } catch (NoSuchFieldException ignored) {
+                current = current.getSuperclass();
+            } catch (Exception e) {
+                logger.fine("[Scala SDK] Field " + fieldName + " injection failed: " + e.getMessage());
+                return false;
+            }
+        }
+        return false;
+    }
+    
+    private String tryFindPluginField(Object instance, Class<?> clazz) {
+        // Search all fields for JavaPlugin type
+        Class<?> current = clazz;
+        while (current != null && current != Object.class) {
+            for (Field field : current.getDeclaredFields()) {
+                if (JavaPlugin.class.isAssignableFrom(field.getType())) {
+                    try {
+                        field.setAccessible(true);
+                        field.set(instance, plugin);
+                        logger.fine("[Scala SDK] Injected via discovered field: " + field.getName());
+                        return "field:" + field.getName();
+                    } catch (Exception e) {
+                        logger.fine("[Scala SDK] Field " + field.getName() + " injection failed: " + e.getMessage());
+                    }
+                }
+            }
+            current = current.getSuperclass();
+        }
+        return null;
+    }
+}
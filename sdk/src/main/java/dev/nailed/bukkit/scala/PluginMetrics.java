@@ -0,0 +1,71 @@
+package dev.nailed.bukkit.scala;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link ScalaPluginMXBean} of one loaded Scala plugin.
+ * 
+ * Holds the loader's counters, not the loader itself, so a registered MXBean never
+ * keeps a released ClassLoader alive.
+ */
+final class PluginMetrics implements ScalaPluginMXBean {
+    
+    private final String pluginName;
+    private final String runtimeMode;
+    private final ScalaMetrics.LoaderStats stats;
+    
+    private volatile String injectionStrategy = "none";
+    private volatile long onLoadNanos;
+    private volatile long onEnableNanos;
+    private volatile long onDisableNanos;
+    private final LongAdder lifecycleFailures = new LongAdder();
+    
+    PluginMetrics(String pluginName, String runtimeMode, ScalaMetrics.LoaderStats stats) {
+        this.pluginName = pluginName;
+        this.runtimeMode = runtimeMode;
+        this.stats = stats != null ? stats : new ScalaMetrics.LoaderStats();
+        this.stats.owner = pluginName;
+    }
+    
+    void recordInjection(String strategy) {
+        injectionStrategy = strategy != null ? strategy : "none";
+        if (ScalaMetrics.hasListeners()) ScalaMetrics.injected(pluginName, injectionStrategy);
+    }
+    
+    void recordLifecycle(String phase, long nanos, boolean failed) {
+        switch (phase) {
+            case "onLoad": onLoadNanos = nanos; break;
+            case "onEnable": onEnableNanos = nanos; break;
+            case "onDisable": onDisableNanos = nanos; break;
+            default: break;
+        }
+        if (failed) lifecycleFailures.increment();
+        if (ScalaMetrics.hasListeners()) ScalaMetrics.lifecycle(pluginName, phase, nanos, failed);
+    }
+    
+    @Override public String getPluginName() { return pluginName; }
+    @Override public String getRuntimeMode() { return runtimeMode; }
+    @Override public String getScalaVersion() { return ScalaRuntime.SCALA_VERSION; }
+    
+    @Override public long getClassesLoaded() {
+        return stats.bukkit.sum() + stats.scala.sum() + stats.plugin.sum() + stats.jdk.sum();
+    }
+    @Override public long getBukkitClasses() { return stats.bukkit.sum(); }
+    @Override public long getScalaClasses() { return stats.scala.sum(); }
+    @Override public long getPluginClasses() { return stats.plugin.sum(); }
+    @Override public long getJdkClasses() { return stats.jdk.sum(); }
+    @Override public long getLoadClassTimeNanos() { return stats.loadNanos.sum(); }
+    @Override public long getFindClassTimeNanos() { return stats.findNanos.sum(); }
+    @Override public long getMisses() { return stats.misses.sum(); }
+    @Override public long getClassNotFoundExceptions() { return stats.notFound.sum(); }
+    
+    @Override public long getRuntimeInitTimeNanos() { return ScalaMetrics.runtimeInitNanos; }
+    @Override public long getDownloadTimeNanos() { return ScalaMetrics.downloadNanos.sum(); }
+    @Override public long getDownloadedBytes() { return ScalaMetrics.downloadedBytes.sum(); }
+    
+    @Override public String getInjectionStrategy() { return injectionStrategy; }
+    @Override public long getOnLoadTimeNanos() { return onLoadNanos; }
+    @Override public long getOnEnableTimeNanos() { return onEnableNanos; }
+    @Override public long getOnDisableTimeNanos() { return onDisableNanos; }
+    @Override public long getLifecycleFailures() { return lifecycleFailures.sum(); }
+}
@@ -0,0 +1,231 @@
+package dev.nailed.bukkit.scala;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Serves the resources of a ScalaPluginClassLoader's JARs without URL connections.
+ *
+ * Every non-class entry of the loader's URLs is indexed once (the first JAR that has a
+ * name wins, as with URLClassLoader). The JARs themselves are never mapped whole:
+ * - a stored entry is mapped on its first read (only its own bytes) and returned as
+ *   read-only views of that mapping - no copy, no stream
+ * - deflated entries are read with a positional read and inflated onto the heap; small
+ *   ones are kept in an LRU cache bounded by total size, so resources read on every
+ *   player join are inflated once
+ *
+ * A JAR whose size or modification time differs from when it was indexed is no longer served
+ * (read returns null, so the loader falls back to its URLs), and after {@link #close()} nothing
+ * is. Mappings of stored entries stay valid until the buffers handed out are unreachable; on
+ * Windows the JAR cannot be replaced until then, and overwriting it in place elsewhere makes
+ * those buffers fault - replace plugin JARs by moving a new file over them.
+ *
+ * Class files (and TASTy files) are not indexed; they go through the regular lookup.
+ */
+final class ResourceStore {
+
+    private final Map<String, Located> index;
+    private volatile boolean closed = false;
+
+    private final long cacheLimit;
+    private final long maxCachedEntry;
+    private final LinkedHashMap<String, ByteBuffer> cache = new LinkedHashMap<>(64, 0.75f, true);
+    private long cachedBytes = 0;
+
+    private ResourceStore(Map<String, Located> index, long cacheLimit) {
+        this.index = index;
+        this.cacheLimit = cacheLimit;
+        // One entry may take at most an eighth of the budget, so a big file cannot flush the rest
+        this.maxCachedEntry = cacheLimit / 8;
+    }
+
+    /**
+     * Index the resources of {@code urls}.
+     *
+     * @param cacheLimit heap budget in bytes for inflated entries (0 disables caching)
+     * @return the store, or null if some URL is not a local JAR readable by {@link ZipDirectory}
+     */
+    static ResourceStore open(URL[] urls, long cacheLimit) {
+        Map<String, Located> index = new HashMap<>();
+        for (URL url : urls) {
+            File file;
+            try {
+                if (!"file".equals(url.getProtocol())) return null;
+                file = new File(url.toURI());
+            } catch (Exception e) {
+                return null;
+            }
+
+            Archive archive = new Archive(file, file.length(), file.lastModified());
+            try {
+                for (ZipDirectory.Entry entry : ZipDirectory.read(file).entries()) {
+                    if (entry.isDirectory() || !isIndexed(entry.name)) continue;
+                    if (!index.containsKey(entry.name)) index.put(entry.name, new Located(archive, entry));
+                }
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        return new ResourceStore(index, cacheLimit);
+    }
+
+    /**
+     * Whether resources named like this are indexed at all (class and TASTy files are not).
+     */
+    static boolean isIndexed(String name) {
+        return !name.endsWith(".class") && !name.endsWith(".tasty");
+    }
+
+    /**
+     * Whether {@code name} is a resource of one of the indexed JARs.
+     */
+    boolean contains(String name) {
+        return !closed && index.containsKey(name);
+    }
+
+    /**
+     * Contents of a resource as a read-only buffer positioned at 0.
+     *
+     * @return the contents, or null if no indexed JAR has the resource, its JAR changed on
+     *         disk, or the store is closed
+     */
+    ByteBuffer read(String name) throws IOException {
+        if (closed) return null;
+        Located located = index.get(name);
+        if (located == null || located.archive.changed()) return null;
+        ZipDirectory.Entry entry = located.entry;
+
+        if (entry.method == ZipDirectory.METHOD_STORED) {
+            ByteBuffer mapped = located.mapping();
+            return closed ? null : mapped.asReadOnlyBuffer();
+        }
+        if (entry.method != ZipDirectory.METHOD_DEFLATED) {
+            throw new IOException("Unsupported compression method " + entry.method + " for " + name);
+        }
+
+        synchronized (cache) {
+            if (closed) return null;
+            ByteBuffer cached = cache.get(name);
+            if (cached != null) return cached.asReadOnlyBuffer();
+        }
+
+        byte[] compressed = located.archive.read(entry);
+        ByteBuffer inflated = ByteBuffer.wrap(NestedJar.inflate(compressed, 0, compressed.length, (int) entry.size, name));
+        if (entry.size <= maxCachedEntry) remember(name, inflated);
+        return inflated.asReadOnlyBuffer();
+    }
+
+    /**
+     * Bytes currently held by the cache.
+     */
+    long cachedBytes() {
+        synchronized (cache) {
+            return cachedBytes;
+        }
+    }
+
+    /**
+     * Stop serving resources and drop the cache and the mappings (mapped memory is unmapped once
+     * unreachable). The index is left alone: reads may still be running, and it goes with the store.
+     */
+    void close() {
+        closed = true;
+        synchronized (cache) {
+            cache.clear();
+            cachedBytes = 0;
+        }
+        for (Located located : index.values()) {
+            located.mapping = null;
+        }
+    }
+
+    private void remember(String name, ByteBuffer contents) {
+        synchronized (cache) {
+            if (closed) return;
+            ByteBuffer previous = cache.put(name, contents);
+            if (previous != null) cachedBytes -= previous.capacity();
+            cachedBytes += contents.capacity();
+
+            // Evict least recently used entries until we are back under budget
+            Iterator<ByteBuffer> eldest = cache.values().iterator();
+            while (cachedBytes > cacheLimit && eldest.hasNext()) {
+                cachedBytes -= eldest.next().capacity();
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * One indexed entry; a stored entry's data is mapped on first use.
+     */
+    private static final class Located {
+        final Archive archive;
+        final ZipDirectory.Entry entry;
+        volatile ByteBuffer mapping;
+
+        Located(Archive archive, ZipDirectory.Entry entry) {
+            this.archive = archive;
+            this.entry = entry;
+        }
+
+        ByteBuffer mapping() throws IOException {
+            ByteBuffer mapped = mapping;
+            if (mapped != null) return mapped;
+            synchronized (this) {
+                if (mapping == null) mapping = archive.map(entry);
+                return mapping;
+            }
+        }
+    }
+
+    /**
+     * One JAR as it was indexed. Channels are closed right after each read or mapping - a
+     * mapping stays valid on its own, so no file handle is held.
+     */
+    private static final class Archive {
+        final File file;
+        final long length;
+        final long lastModified;
+
+        Archive(File file, long length, long lastModified) {
+            this.file = file;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+
+        /** Whether the file was replaced or rewritten since it was indexed. */
+        boolean changed() {
+            return file.length() != length || file.lastModified() != lastModified;
+        }
+
+        ByteBuffer map(ZipDirectory.Entry entry) throws IOException {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                long offset = ZipDirectory.dataOffset(channel, entry);
+                return channel.map(FileChannel.MapMode.READ_ONLY, offset, entry.compressedSize)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+
+        byte[] read(ZipDirectory.Entry entry) throws IOException {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                long offset = ZipDirectory.dataOffset(channel, entry);
+                ByteBuffer compressed = ByteBuffer.allocate((int) entry.compressedSize);
+                while (compressed.hasRemaining()) {
+                    if (channel.read(compressed, offset + compressed.position()) < 0) {
+                        throw new IOException("Unexpected end of file in " + entry.name);
+                    }
+                }
+                return compressed.array();
+            }
+        }
+    }
+}
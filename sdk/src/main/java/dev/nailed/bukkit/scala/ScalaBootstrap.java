@@ -1,10 +1,15 @@
 package dev.nailed.bukkit.scala;
 
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.PluginCommand;
+import org.bukkit.event.HandlerList;
+import org.bukkit.plugin.Plugin;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import java.io.File;
-import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.Properties;
 import java.util.logging.Level;
 
 /**
@@ -14,40 +19,301 @@ import java.util.logging.Level;
  * Supports Bukkit/Spigot/Paper 1.8-1.21+ with Java 8-21.
  * 
  * Architecture:
- * - ScalaRuntime downloads Scala libraries once
+ * - ScalaRuntime downloads Scala libraries once, unless the plugin JAR bundles a minimized
+ *   runtime (Maven goal {@code shrink-runtime}), which is mapped from the JAR instead
  * - Each plugin gets its own ScalaPluginClassLoader
+ * - Runtime setup starts in the background when the first Scala plugin is constructed, and each
+ *   plugin's ClassLoader is created in parallel; onLoad only waits for what is still missing
+ * - Opt-in shared runtime: {@code scala-runtime: shared} in plugin.yml (or {@code Scala-Runtime}
+ *   manifest attribute, or {@code -Dbukkit.scala.runtime=shared} server-wide) loads Scala classes
+ *   from one loader per Scala version; {@code scala-runtime: isolated} opts a plugin back out
  * - No ClassLoader injection needed - works on all Java versions without JVM args
+ * - On disable the ScalaPluginClassLoader is closed and released, so disabling or reloading
+ *   the plugin does not keep its classes (and the Scala library copy) alive
+ * - {@code /scalareload [plugin]} (opt-in, {@code scala-reload-command: true}) or {@link #reloadScala()}
+ *   swaps the Scala classes in place: the plugin JAR is re-read by a fresh loader without going
+ *   through Bukkit's plugin reload
  */
 public abstract class ScalaBootstrap extends JavaPlugin {
     
     private Object scalaPluginInstance = null;
     private ClassLoader scalaClassLoader = null;
+    private LifecycleDispatcher lifecycle = null;
+    private boolean recordingProfile = false;
+    private ScalaPluginOptions options = null;
+    private boolean released = false;
+    private Command reloadCommand = null;
+    private Command profileCommand = null;
+    private PluginMetrics metrics = null;
+    private javax.management.ObjectName metricsName = null;
+    
+    // Runtime setup and ClassLoader creation started at construction; taken by the first loadScala()
+    private java.util.concurrent.CompletableFuture<ClassLoader> pendingLoader = null;
+    
+    protected ScalaBootstrap() {
+        try {
+            prepareLoaderAsync();
+        } catch (RuntimeException | LinkageError e) {
+            // Not fatal - onLoad() sets everything up synchronously instead
+            pendingLoader = null;
+        }
+    }
     
     @Override
     public final void onLoad() {
+        loadScala();
+        callScalaMethod("onLoad", lifecycle.onLoad);
+    }
+    
+    @Override
+    public final void onEnable() {
+        if (released) {
+            // Enabled again after a disable (e.g. by a plugin manager) - the old loader is gone
+            loadScala();
+            callScalaMethod("onLoad", lifecycle.onLoad);
+        }
+        if (lifecycle != null) callScalaMethod("onEnable", lifecycle.onEnable);
+        
+        if (recordingProfile) {
+            saveClassProfile();
+        }
+        
+        if (options != null && options.isReloadCommand()) {
+            registerReloadCommand();
+        }
+        if (ScalaProfiler.ENABLED) {
+            registerProfileCommand();
+        }
+    }
+    
+    @Override
+    public final void onDisable() {
+        if (reloadCommand != null) {
+            CommandMapAccess.unregister(getServer(), reloadCommand);
+            reloadCommand = null;
+        }
+        if (profileCommand != null) {
+            CommandMapAccess.unregister(getServer(), profileCommand);
+            profileCommand = null;
+        }
+        if (lifecycle != null) {
+            callScalaMethod("onDisable", lifecycle.onDisable);
+            callScalaMethod("runShutdownHooks", lifecycle.shutdown);
+        }
+        unloadScala();
+    }
+    
+    /**
+     * Disable the Scala plugin, release its ClassLoader and load it again from the plugin JAR.
+     * 
+     * Listeners, scheduled tasks and services registered by this plugin are removed and command
+     * executors are reset before the new instance is enabled. The Java bootstrap itself (this
+     * class) is not reloaded. Must be called on the main thread.
+     * 
+     * @return true if the new instance was loaded and enabled
+     */
+    public final boolean reloadScala() {
+        if (!isEnabled()) return false;
+        if (!getServer().isPrimaryThread()) {
+            throw new IllegalStateException("[Scala SDK] reloadScala() must be called on the main thread");
+        }
+        
+        long start = System.nanoTime();
+        if (lifecycle != null) {
+            callScalaMethod("onDisable", lifecycle.onDisable);
+            callScalaMethod("runShutdownHooks", lifecycle.shutdown);
+        }
+        detachFromServer();
+        unloadScala();
+        
+        try {
+            loadScala();
+        } catch (RuntimeException e) {
+            // Already logged; the plugin stays enabled without Scala code until the next reload
+            return false;
+        }
+        callScalaMethod("onLoad", lifecycle.onLoad);
+        callScalaMethod("onEnable", lifecycle.onEnable);
+        
+        getLogger().info("[Scala SDK] Reloaded in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return true;
+    }
+    
+    /**
+     * Initialize the runtime, create the ClassLoader and instantiate the Scala main class.
+     */
+    private void loadScala() {
+        long start = System.nanoTime();
+        java.util.concurrent.CompletableFuture<ClassLoader> pending = pendingLoader;
+        pendingLoader = null;
+        
+        if (pending != null) {
+            scalaClassLoader = awaitLoader(pending);
+        } else {
+            options = ScalaPluginOptions.load(getPluginJarFile());
+            scalaClassLoader = createLoader(getPluginJarFile(), options);
+        }
+        ScalaMetrics.runtimeInitNanos = System.nanoTime() - start;
+        released = false;
+        registerMetrics();
+        
+        if (options.isClassProfile()) {
+            startClassProfile();
+        }
+        
+        initScalaPlugin();
+    }
+    
+    /**
+     * Start runtime initialization and this plugin's ClassLoader creation in the background.
+     * 
+     * Called from the constructor, i.e. while Bukkit is still constructing the other plugins.
+     * The runtime future is shared by all Scala plugins; ClassLoaders of different plugins
+     * (indexing their JARs) are created in parallel on the common pool once it completes.
+     */
+    private void prepareLoaderAsync() {
+        final File pluginJar = getPluginJarFile();
+        final ScalaPluginOptions opts = ScalaPluginOptions.load(pluginJar);
+        
+        java.util.concurrent.CompletableFuture<?> runtime = opts.isBundledRuntime()
+            ? java.util.concurrent.CompletableFuture.completedFuture(null)
+            : ScalaRuntime.initializeAsync(getLogger());
+        
+        options = opts;
+        pendingLoader = runtime.thenApplyAsync(ready -> createLoader(pluginJar, opts));
+    }
+    
+    private ClassLoader createLoader(File pluginJar, ScalaPluginOptions opts) {
+        if (opts.isBundledRuntime()) {
+            // Minimized runtime inside the plugin JAR - no download, never shared
+            if (opts.isSharedRuntime()) {
+                getLogger().warning("[Scala SDK] scala-runtime: shared is ignored - the plugin bundles its Scala runtime");
+            }
+            return configure(ScalaRuntime.createBundledPluginClassLoader(pluginJar, getClass().getClassLoader(), getLogger()), opts);
+        }
+        
         // Initialize Scala runtime (downloads libs if needed)
         ScalaRuntime.initialize(getLogger());
         
         // Create ClassLoader for this plugin
-        File pluginJar = getPluginJarFile();
-        scalaClassLoader = ScalaRuntime.createPluginClassLoader(
+        return configure(ScalaRuntime.createPluginClassLoader(
             pluginJar, 
             getClass().getClassLoader(), 
+            opts.isSharedRuntime(),
             getLogger()
-        );
+        ), opts);
+    }
+    
+    private static ClassLoader configure(ClassLoader loader, ScalaPluginOptions opts) {
+        if (loader instanceof ScalaRuntime.ScalaPluginClassLoader) {
+            ((ScalaRuntime.ScalaPluginClassLoader) loader).setResourceCacheLimit(opts.getResourceCacheKb() * 1024L);
+        }
+        return loader;
+    }
+    
+    /**
+     * Wait for the ClassLoader started by {@link #prepareLoaderAsync()}.
+     */
+    private ClassLoader awaitLoader(java.util.concurrent.CompletableFuture<ClassLoader> pending) {
+        try {
+            return pending.join();
+        } catch (java.util.concurrent.CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new RuntimeException(cause);
+        }
+    }
+    
+    /**
+     * Drop every reference to the Scala plugin and release its ClassLoader.
+     */
+    private void unloadScala() {
+        if (recordingProfile) {
+            recordingProfile = false;
+            ((ScalaRuntime.ScalaPluginClassLoader) scalaClassLoader).stopRecording();
+        }
         
-        initScalaPlugin();
-        callScalaMethod("onLoad");
+        // The MBean server must not hold on to this load's counters
+        ScalaMetrics.unregister(metricsName);
+        metricsName = null;
+        metrics = null;
+        ScalaProfiler.forget(getName());
+        
+        scalaPluginInstance = null;
+        lifecycle = null;
+        scalaClassLoader = null;
+        released = true;
+        
+        ScalaRuntime.releasePluginClassLoader(getPluginJarFile(), getLogger());
     }
     
-    @Override
-    public final void onEnable() {
-        callScalaMethod("onEnable");
+    /**
+     * Remove what the Scala plugin registered with the server under this plugin.
+     * Bukkit does this itself on disable; a hot reload keeps the plugin enabled.
+     */
+    private void detachFromServer() {
+        HandlerList.unregisterAll(this);
+        getServer().getScheduler().cancelTasks(this);
+        getServer().getServicesManager().unregisterAll(this);
+        
+        java.util.Map<String, java.util.Map<String, Object>> commands = getDescription().getCommands();
+        if (commands == null) return;
+        for (String name : commands.keySet()) {
+            PluginCommand command = getCommand(name);
+            if (command == null) continue;
+            // null falls back to this plugin, which no longer references Scala classes
+            command.setExecutor(null);
+            command.setTabCompleter(null);
+        }
     }
     
-    @Override
-    public final void onDisable() {
-        callScalaMethod("onDisable");
+    /**
+     * Expose this load's counters as {@code dev.nailed.bukkit.scala:type=ScalaPlugin,name=<plugin>}.
+     */
+    private void registerMetrics() {
+        String mode;
+        ScalaMetrics.LoaderStats stats = null;
+        if (options.isBundledRuntime()) {
+            mode = "bundled";
+        } else if (scalaClassLoader instanceof ScalaRuntime.ScalaPluginClassLoader 
+                && ((ScalaRuntime.ScalaPluginClassLoader) scalaClassLoader).isSharedRuntime()) {
+            mode = "shared";
+        } else {
+            mode = "isolated";
+        }
+        if (scalaClassLoader instanceof ScalaRuntime.ScalaPluginClassLoader) {
+            stats = ((ScalaRuntime.ScalaPluginClassLoader) scalaClassLoader).stats();
+        }
+        metrics = new PluginMetrics(getName(), mode, stats);
+        metricsName = ScalaMetrics.register(metrics, getLogger());
+    }
+    
+    private void registerReloadCommand() {
+        Command command = new ReloadCommand(this);
+        if (CommandMapAccess.register(getServer(), getName().toLowerCase(java.util.Locale.ROOT), command)) {
+            reloadCommand = command;
+        } else {
+            getLogger().fine("[Scala SDK] Could not register /scalareload");
+        }
+    }
+    
+    private void registerProfileCommand() {
+        Command command = new ScalaProfiler.ProfileCommand(this);
+        if (CommandMapAccess.register(getServer(), getName().toLowerCase(java.util.Locale.ROOT), command)) {
+            profileCommand = command;
+        } else {
+            getLogger().fine("[Scala SDK] Could not register /scalaprof");
+        }
+    }
+    
+    /**
+     * Profiler figures of this plugin's event handlers, commands and main-thread tasks over the
+     * last {@code windowSeconds} (at most 60): handler to {calls, total, p99, max}, times in
+     * nanoseconds. Empty unless the server runs with {@code -Dbukkit.scala.profiler=true}.
+     */
+    public final java.util.Map<String, long[]> getProfile(int windowSeconds) {
+        return ScalaProfiler.report(getName(), windowSeconds);
     }
     
     /**
@@ -74,6 +340,36 @@ public abstract class ScalaBootstrap extends JavaPlugin {
         }
     }
     
+    /**
+     * Preload the profile recorded on an earlier boot, or record one if there is none.
+     */
+    private void startClassProfile() {
+        if (!(scalaClassLoader instanceof ScalaRuntime.ScalaPluginClassLoader)) return;
+        ScalaRuntime.ScalaPluginClassLoader loader = (ScalaRuntime.ScalaPluginClassLoader) scalaClassLoader;
+        
+        File profileFile = new File(getDataFolder(), ClassLoadProfile.FILE_NAME);
+        java.util.List<String> profile = ClassLoadProfile.read(profileFile, getDescription().getVersion());
+        if (profile != null && !profile.isEmpty()) {
+            getLogger().fine("[Scala SDK] Preloading " + profile.size() + " profiled classes");
+            ClassLoadProfile.preload(loader, profile, profileFile, getLogger());
+            return;
+        }
+        
+        loader.startRecording();
+        recordingProfile = true;
+    }
+    
+    private void saveClassProfile() {
+        recordingProfile = false;
+        java.util.List<String> loaded = ((ScalaRuntime.ScalaPluginClassLoader) scalaClassLoader).stopRecording();
+        try {
+            ClassLoadProfile.write(new File(getDataFolder(), ClassLoadProfile.FILE_NAME), 
+                getDescription().getVersion(), loaded);
+        } catch (java.io.IOException e) {
+            getLogger().warning("[Scala SDK] Could not save class-load profile: " + e.getMessage());
+        }
+    }
+    
     private void initScalaPlugin() {
         try {
             String className = getScalaMainClass();
@@ -81,6 +377,7 @@ public abstract class ScalaBootstrap extends JavaPlugin {
             
             scalaPluginInstance = scalaClass.getConstructor().newInstance();
             injectPlugin(scalaClass);
+            lifecycle = new LifecycleDispatcher(scalaPluginInstance);
             
             getLogger().info("[Scala SDK] Loaded: " + className);
             
@@ -91,93 +388,44 @@ public abstract class ScalaBootstrap extends JavaPlugin {
     }
     
     private void injectPlugin(Class<?> scalaClass) {
-        // Try Scala 3 setter method: _plugin_$eq(JavaPlugin)
-        if (trySetterMethod(scalaClass, "_plugin_$eq", JavaPlugin.class)) return;
-        if (trySetterMethod(scalaClass, "dev$nailed$bukkit$scala$BukkitPlugin$_setter_$_plugin_$eq", JavaPlugin.class)) return;
-        
-        // Try setPlugin method (user-defined)
-        if (trySetterMethod(scalaClass, "setPlugin", JavaPlugin.class)) return;
-        
-        // Try field injection (multiple naming conventions)
-        if (tryFieldInjection(scalaClass, "_plugin")) return;
-        if (tryFieldInjection(scalaClass, "plugin")) return;
-        if (tryFieldInjection(scalaClass, "dev$nailed$bukkit$scala$BukkitPlugin$$_plugin")) return;
+        Properties plan = PluginInjector.loadPlan(scalaClassLoader, scalaClass.getName());
+        String strategy = new PluginInjector(this, getLogger()).inject(scalaPluginInstance, scalaClass, plan);
+        if (metrics != null) metrics.recordInjection(strategy);
         
-        // Search all fields for JavaPlugin type
-        if (tryFindPluginField(scalaClass)) return;
-        
-        getLogger().warning("[Scala SDK] Could not inject plugin reference - some features may not work");
-    }
-    
-    private boolean trySetterMethod(Class<?> clazz, String methodName, Class<?> paramType) {
-        try {
-            Method method = clazz.getMethod(methodName, paramType);
-            method.invoke(scalaPluginInstance, this);
-            getLogger().fine("[Scala SDK] Injected via " + methodName + "()");
-            return true;
-        } catch (NoSuchMethodException ignored) {
-            return false;
-        } catch (Exception e) {
-            getLogger().fine("[Scala SDK] " + methodName + " failed: " + e.getMessage());
-            return false;
+        if (strategy == null) {
+            getLogger().warning("[Scala SDK] Could not inject plugin reference - some features may not work");
+        } else {
+            getLogger().fine("[Scala SDK] Injected plugin reference via " + strategy);
         }
     }
     
-    private boolean tryFieldInjection(Class<?> clazz, String fieldName) {
-        // Search in class hierarchy
-        Class<?> current = clazz;
-        while (current != null && current != Object.class) {
-            try {
-                Field field = current.getDeclaredField(fieldName);
-                field.setAccessible(true);
-                field.set(scalaPluginInstance, this);
-                getLogger().fine("[Scala SDK] Injected via field: " + fieldName);
-                return true;
-            } catch (NoSuchFieldException ignored) {
-                current = current.getSuperclass();
-            } catch (Exception e) {
-                getLogger().fine("[Scala SDK] Field " + fieldName + " injection failed: " + e.getMessage());
-                return false;
-            }
-        }
-        return false;
-    }
-    
-    private boolean tryFindPluginField(Class<?> clazz) {
-        // Search all fields for JavaPlugin type
-        Class<?> current = clazz;
-        while (current != null && current != Object.class) {
-            for (Field field : current.getDeclaredFields()) {
-                if (JavaPlugin.class.isAssignableFrom(field.getType())) {
-                    try {
-                        field.setAccessible(true);
-                        field.set(scalaPluginInstance, this);
-                        getLogger().fine("[Scala SDK] Injected via discovered field: " + field.getName());
-                        return true;
-                    } catch (Exception e) {
-                        getLogger().fine("[Scala SDK] Field " + field.getName() + " injection failed: " + e.getMessage());
-                    }
-                }
-            }
-            current = current.getSuperclass();
+    private void callScalaMethod(String methodName, Runnable entryPoint) {
+        if (entryPoint == null) return;
+        
+        long start = System.nanoTime();
+        Throwable failure = runInContext(scalaClassLoader, entryPoint);
+        if (failure != null) {
+            getLogger().log(Level.SEVERE, "[Scala SDK] " + methodName + " failed", failure);
         }
-        return false;
+        if (metrics != null) metrics.recordLifecycle(methodName, System.nanoTime() - start, failure != null);
     }
     
-    private void callScalaMethod(String methodName) {
-        if (scalaPluginInstance == null) return;
-        
-        // Set context classloader to ensure Scala classes can be found
-        ClassLoader originalCL = Thread.currentThread().getContextClassLoader();
+    /**
+     * Run an entry point with {@code loader} as context ClassLoader, so Scala classes can be found.
+     * 
+     * @return what the entry point threw, or null
+     */
+    static Throwable runInContext(ClassLoader loader, Runnable entryPoint) {
+        Thread thread = Thread.currentThread();
+        ClassLoader originalCL = thread.getContextClassLoader();
         try {
-            Thread.currentThread().setContextClassLoader(scalaClassLoader);
-            Method method = scalaPluginInstance.getClass().getMethod(methodName);
-            method.invoke(scalaPluginInstance);
-        } catch (NoSuchMethodException ignored) {
-        } catch (Exception e) {
-            getLogger().log(Level.SEVERE, "[Scala SDK] " + methodName + " failed", e);
+            thread.setContextClassLoader(loader);
+            entryPoint.run();
+            return null;
+        } catch (Exception | LinkageError e) {
+            return e;
         } finally {
-            Thread.currentThread().setContextClassLoader(originalCL);
+            thread.setContextClassLoader(originalCL);
         }
     }
     
@@ -194,4 +442,73 @@ public abstract class ScalaBootstrap extends JavaPlugin {
     public Object getScalaInstance() {
         return scalaPluginInstance;
     }
+    
+    /**
+     * {@code /scalareload [plugin]} - hot-reload a Scala plugin (this one by default).
+     * 
+     * Every Scala plugin that opts in registers one as {@code /<plugin>:scalareload}; the first also gets the
+     * plain label. The target is reached reflectively because each plugin has its own shaded
+     * copy of ScalaBootstrap.
+     */
+    static final class ReloadCommand extends Command {
+        
+        static final String PERMISSION = "bukkit.scala.reload";
+        
+        private final Plugin owner;
+        
+        ReloadCommand(Plugin owner) {
+            super("scalareload", "Hot-reload a Scala plugin", "/scalareload [plugin]", 
+                java.util.Collections.<String>emptyList());
+            this.owner = owner;
+            setPermission(PERMISSION);
+        }
+        
+        @Override
+        public boolean execute(CommandSender sender, String label, String[] args) {
+            if (!testPermission(sender)) return true;
+            
+            Plugin target = args.length > 0 ? owner.getServer().getPluginManager().getPlugin(args[0]) : owner;
+            if (target == null) {
+                sender.sendMessage("Unknown plugin: " + args[0]);
+                return true;
+            }
+            
+            Method reload;
+            try {
+                reload = target.getClass().getMethod("reloadScala");
+            } catch (NoSuchMethodException e) {
+                sender.sendMessage(target.getName() + " is not a Scala plugin");
+                return true;
+            }
+            
+            try {
+                boolean reloaded = (Boolean) reload.invoke(target);
+                sender.sendMessage(reloaded 
+                    ? "Reloaded " + target.getName() 
+                    : "Failed to reload " + target.getName() + " - see the console");
+            } catch (Exception e) {
+                owner.getLogger().log(Level.SEVERE, "[Scala SDK] Reload of " + target.getName() + " failed", e);
+                sender.sendMessage("Failed to reload " + target.getName() + " - see the console");
+            }
+            return true;
+        }
+        
+        @Override
+        public java.util.List<String> tabComplete(CommandSender sender, String alias, String[] args) {
+            java.util.List<String> names = new java.util.ArrayList<>();
+            if (args.length != 1) return names;
+            
+            String prefix = args[0].toLowerCase(java.util.Locale.ROOT);
+            for (Plugin plugin : owner.getServer().getPluginManager().getPlugins()) {
+                if (!plugin.getName().toLowerCase(java.util.Locale.ROOT).startsWith(prefix)) continue;
+                try {
+                    plugin.getClass().getMethod("reloadScala");
+                    names.add(plugin.getName());
+                } catch (NoSuchMethodException ignored) {
+                    // Not a Scala plugin
+                }
+            }
+            return names;
+        }
+    }
 }
@@ -0,0 +1,192 @@
+package dev.nailed.bukkit.scala;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * Class-data-sharing (AppCDS) archive management for the Scala runtime JARs.
+ *
+ * A JVM can only map a CDS archive that was named on its command line, so the SDK cannot
+ * switch archives on by itself. Instead it owns the archive files under libraries/scala/cds/
+ * and tells the server owner which flags to use:
+ *
+ * 1. Training boot:  -XX:ArchiveClassesAtExit=libraries/scala/cds/scala-<key>.jsa
+ *    The JVM records every class loaded during the run (including Scala classes defined by
+ *    ScalaPluginClassLoader) and writes a dynamic archive at shutdown.
+ * 2. Later boots:    -XX:SharedArchiveFile=libraries/scala/cds/scala-<key>.jsa
+ *    Scala classes are mapped from the archive instead of being parsed and verified again.
+ *
+ * The key covers the Scala versions, the Scala JARs and the JVM build, so a Scala or JVM
+ * upgrade changes the archive name. Archives with another key are stale and deleted, and
+ * a command line that still points at one is reported so it can be retrained.
+ *
+ * Enabled when the command line references the cds directory, or with -Dbukkit.scala.cds=true.
+ * Dynamic archives need Java 13+; older JVMs skip all of this.
+ */
+final class ScalaCds {
+
+    private static final String ENABLE_PROPERTY = "bukkit.scala.cds";
+    private static final String TRAIN_FLAG = "-XX:ArchiveClassesAtExit=";
+    private static final String USE_FLAG = "-XX:SharedArchiveFile=";
+
+    private ScalaCds() {}
+
+    /**
+     * Check the archive state for the current JVM and Scala JARs.
+     * Never throws - CDS is an optimization.
+     */
+    static void inspect(File libDir, String scalaVersions, File[] scalaJars, Logger logger) {
+        try {
+            if (javaFeatureVersion() < 13) return;
+
+            File cdsDir = new File(libDir, "cds");
+            List<String> jvmArgs = ManagementFactory.getRuntimeMXBean().getInputArguments();
+            String trainingTarget = flagValue(jvmArgs, TRAIN_FLAG);
+            String mappedArchive = flagValue(jvmArgs, USE_FLAG);
+
+            boolean referenced = isInside(cdsDir, trainingTarget) || isInside(cdsDir, mappedArchive);
+            if (!referenced && !Boolean.getBoolean(ENABLE_PROPERTY)) return;
+
+            if (!cdsDir.exists()) cdsDir.mkdirs();
+
+            String key = archiveKey(scalaVersions, scalaJars);
+            File archive = new File(cdsDir, "scala-" + key + ".jsa");
+            File stamp = new File(cdsDir, "scala-" + key + ".properties");
+
+            deleteStaleArchives(cdsDir, archive, stamp, mappedArchive, logger);
+
+            if (isInside(cdsDir, trainingTarget)) {
+                if (sameFile(archive, trainingTarget)) {
+                    writeStamp(stamp, scalaVersions, scalaJars);
+                    logger.info("[Scala SDK] CDS training run - archive will be written to "
+                        + archive.getPath() + " at shutdown");
+                } else {
+                    logger.warning("[Scala SDK] " + TRAIN_FLAG + " points at an outdated archive name. Use "
+                        + TRAIN_FLAG + archive.getPath());
+                }
+                return;
+            }
+
+            if (isInside(cdsDir, mappedArchive)) {
+                if (sameFile(archive, mappedArchive) && archive.isFile()) {
+                    logger.info("[Scala SDK] Scala classes are mapped from CDS archive " + archive.getName());
+                } else {
+                    logger.warning("[Scala SDK] CDS archive " + mappedArchive + " is stale (Scala or JVM changed). "
+                        + "Retrain with " + TRAIN_FLAG + archive.getPath());
+                }
+                return;
+            }
+
+            // Enabled by property but not on the command line yet
+            if (archive.isFile() && stamp.isFile()) {
+                logger.info("[Scala SDK] CDS archive ready - add " + USE_FLAG + archive.getPath()
+                    + " to the server JVM flags");
+            } else {
+                logger.info("[Scala SDK] No CDS archive for this JVM - boot once with "
+                    + TRAIN_FLAG + archive.getPath() + " to create one");
+            }
+        } catch (Exception e) {
+            logger.fine("[Scala SDK] CDS inspection failed: " + e);
+        }
+    }
+
+    /**
+     * Hash of everything that invalidates an archive.
+     */
+    static String archiveKey(String scalaVersions, File[] scalaJars) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        update(digest, scalaVersions);
+        update(digest, System.getProperty("java.vm.vendor"));
+        update(digest, System.getProperty("java.vm.version"));
+        update(digest, System.getProperty("java.home"));
+        for (File jar : scalaJars) {
+            update(digest, jar.getName());
+            update(digest, Long.toString(jar.length()));
+            update(digest, Long.toString(jar.lastModified()));
+        }
+
+        byte[] hash = digest.digest();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 8; i++) {
+            sb.append(String.format("%02x", hash[i]));
+        }
+        return sb.toString();
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(String.valueOf(value).getBytes(java.nio.charset.StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static void deleteStaleArchives(File cdsDir, File archive, File stamp, String inUse, Logger logger) {
+        File[] files = cdsDir.listFiles();
+        if (files == null) return;
+
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.startsWith("scala-")) continue;
+            if (file.equals(archive) || file.equals(stamp)) continue;
+            if (sameFile(file, inUse)) continue; // mapped by this JVM - delete on the next boot
+
+            if (file.delete()) {
+                logger.info("[Scala SDK] Deleted stale CDS file " + name);
+            }
+        }
+    }
+
+    private static void writeStamp(File stamp, String scalaVersions, File[] scalaJars) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("scala", scalaVersions);
+        properties.setProperty("java.vm.vendor", String.valueOf(System.getProperty("java.vm.vendor")));
+        properties.setProperty("java.vm.version", String.valueOf(System.getProperty("java.vm.version")));
+        properties.setProperty("java.home", String.valueOf(System.getProperty("java.home")));
+        for (File jar : scalaJars) {
+            properties.setProperty("jar." + jar.getName(), jar.length() + "@" + jar.lastModified());
+        }
+        try (OutputStream out = new FileOutputStream(stamp)) {
+            properties.store(out, "Bukkit Scala SDK CDS archive stamp");
+        }
+    }
+
+    private static String flagValue(List<String> jvmArgs, String flag) {
+        String value = null;
+        for (String arg : jvmArgs) {
+            if (arg.startsWith(flag)) value = arg.substring(flag.length()); // last one wins, like HotSpot
+        }
+        return value;
+    }
+
+    private static boolean isInside(File dir, String path) {
+        if (path == null) return false;
+        File parent = new File(path).getAbsoluteFile().getParentFile();
+        return parent != null && sameFile(dir, parent.getPath());
+    }
+
+    private static boolean sameFile(File file, String path) {
+        if (path == null) return false;
+        try {
+            return file.getCanonicalFile().equals(new File(path).getCanonicalFile());
+        } catch (IOException e) {
+            return file.getAbsoluteFile().equals(new File(path).getAbsoluteFile());
+        }
+    }
+
+    private static int javaFeatureVersion() {
+        String version = System.getProperty("java.specification.version", "1.8");
+        if (version.startsWith("1.")) version = version.substring(2);
+        int dot = version.indexOf('.');
+        if (dot >= 0) version = version.substring(0, dot);
+        try {
+            return Integer.parseInt(version);
+        } catch (NumberFormatException e) {
+            return 8;
+        }
+    }
+}
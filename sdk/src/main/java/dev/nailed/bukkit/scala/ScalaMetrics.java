@@ -0,0 +1,174 @@
+package dev.nailed.bukkit.scala;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Runtime instrumentation of the SDK: JMX registration and a pluggable listener hook.
+ * 
+ * Every Scala plugin gets a {@link ScalaPluginMXBean}. For other backends (Prometheus,
+ * a metrics plugin, logging) register a {@link Listener}; it receives the events of the
+ * SDK copy shaded into the calling plugin. The class is shared with the Scala side of
+ * the plugin (like {@link ScalaPluginLifecycle}), so Scala code can register listeners too.
+ * 
+ * Listener callbacks run on the thread that produced the event and must be cheap and
+ * thread-safe. Nothing is computed for listeners while none is registered.
+ */
+public final class ScalaMetrics {
+    
+    /**
+     * Receives SDK events. All methods default to no-ops.
+     */
+    public interface Listener {
+        
+        /**
+         * A class was resolved through a plugin's ScalaPluginClassLoader.
+         * 
+         * @param source bukkit, scala, plugin or jdk
+         */
+        default void classLoaded(String plugin, String source, String className, long nanos) {}
+        
+        default void classNotFound(String plugin, String className) {}
+        
+        /**
+         * A runtime artifact was downloaded (or copied from a {@code file:} mirror) and verified.
+         */
+        default void artifactFetched(String artifact, long bytes, long nanos) {}
+        
+        default void injected(String plugin, String strategy) {}
+        
+        /**
+         * A lifecycle method returned.
+         * 
+         * @param phase onLoad, onEnable, onDisable or runShutdownHooks
+         */
+        default void lifecycle(String plugin, String phase, long nanos, boolean failed) {}
+    }
+    
+    static final String DOMAIN = "dev.nailed.bukkit.scala";
+    
+    private static final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private static volatile boolean hasListeners = false;
+    
+    // Runtime figures of this SDK copy
+    static final LongAdder downloadNanos = new LongAdder();
+    static final LongAdder downloadedBytes = new LongAdder();
+    static volatile long runtimeInitNanos = 0; // time blocked in loadScala(), not the download itself
+    
+    private ScalaMetrics() {}
+    
+    public static void addListener(Listener listener) {
+        listeners.add(listener);
+        hasListeners = true;
+    }
+    
+    public static void removeListener(Listener listener) {
+        listeners.remove(listener);
+        hasListeners = !listeners.isEmpty();
+    }
+    
+    static boolean hasListeners() {
+        return hasListeners;
+    }
+    
+    static void classLoaded(String plugin, String source, String className, long nanos) {
+        for (Listener listener : listeners) listener.classLoaded(plugin, source, className, nanos);
+    }
+    
+    static void classNotFound(String plugin, String className) {
+        for (Listener listener : listeners) listener.classNotFound(plugin, className);
+    }
+    
+    static void artifactFetched(String artifact, long bytes, long nanos) {
+        downloadNanos.add(nanos);
+        downloadedBytes.add(bytes);
+        for (Listener listener : listeners) listener.artifactFetched(artifact, bytes, nanos);
+    }
+    
+    static void injected(String plugin, String strategy) {
+        for (Listener listener : listeners) listener.injected(plugin, strategy);
+    }
+    
+    static void lifecycle(String plugin, String phase, long nanos, boolean failed) {
+        for (Listener listener : listeners) listener.lifecycle(plugin, phase, nanos, failed);
+    }
+    
+    /**
+     * Register a plugin's MXBean, replacing one left over from a previous load.
+     * 
+     * @return the name it was registered under, or null if JMX is unavailable
+     */
+    static ObjectName register(PluginMetrics metrics, Logger logger) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(DOMAIN + ":type=ScalaPlugin,name=" + ObjectName.quote(metrics.getPluginName()));
+            if (server.isRegistered(name)) server.unregisterMBean(name);
+            server.registerMBean(metrics, name);
+            return name;
+        } catch (Exception | LinkageError e) {
+            logger.fine("[Scala SDK] Could not register MXBean: " + e);
+            return null;
+        }
+    }
+    
+    /**
+     * Unregister an MXBean so it no longer references the plugin's loader statistics.
+     */
+    static void unregister(ObjectName name) {
+        if (name == null) return;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) server.unregisterMBean(name);
+        } catch (Exception ignored) {
+            // Already gone
+        }
+    }
+    
+    /**
+     * Class-loading counters of one ScalaPluginClassLoader.
+     */
+    static final class LoaderStats {
+        
+        final LongAdder bukkit = new LongAdder();
+        final LongAdder scala = new LongAdder();
+        final LongAdder plugin = new LongAdder();
+        final LongAdder jdk = new LongAdder();
+        final LongAdder loadNanos = new LongAdder();
+        final LongAdder findNanos = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LongAdder notFound = new LongAdder();
+        
+        // Plugin name for listener events, set once the bootstrap knows it
+        volatile String owner = "?";
+        
+        void recordLoad(String name, Class<?> c, ClassLoader self, long nanos) {
+            loadNanos.add(nanos);
+            String source;
+            if (name.startsWith("scala.") || name.startsWith("dotty.")) {
+                scala.increment();
+                source = "scala";
+            } else if (c.getClassLoader() == self) {
+                plugin.increment();
+                source = "plugin";
+            } else if (name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("sun.") || name.startsWith("jdk.")) {
+                jdk.increment();
+                source = "jdk";
+            } else {
+                bukkit.increment();
+                source = "bukkit";
+            }
+            if (hasListeners) classLoaded(owner, source, name, nanos);
+        }
+        
+        void recordNotFound(String name, long nanos) {
+            loadNanos.add(nanos);
+            notFound.increment();
+            if (hasListeners) classNotFound(owner, name);
+        }
+    }
+}
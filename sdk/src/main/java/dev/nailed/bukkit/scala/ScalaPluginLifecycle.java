@@ -0,0 +1,33 @@
+package dev.nailed.bukkit.scala;
+
+import org.bukkit.plugin.java.JavaPlugin;
+
+/**
+ * Lifecycle bridge between ScalaBootstrap and the Scala plugin instance.
+ * 
+ * BukkitPlugin implements this interface, so the bootstrap calls lifecycle methods
+ * through a plain interface call instead of reflection. The interface is always loaded
+ * by the Bukkit PluginClassLoader (ScalaPluginClassLoader delegates it), so the bootstrap
+ * and the Scala side see the same Class object.
+ * 
+ * Plugins that don't extend BukkitPlugin can still declare public no-arg
+ * onLoad/onEnable/onDisable methods - those are bound as MethodHandles once.
+ */
+public interface ScalaPluginLifecycle {
+    
+    /**
+     * Receive the JavaPlugin instance. Called once, before onLoad.
+     */
+    void setPlugin(JavaPlugin plugin);
+    
+    void onLoad();
+    
+    void onEnable();
+    
+    void onDisable();
+    
+    /**
+     * Release SDK-managed resources (executors, hooks). Called after onDisable.
+     */
+    default void runShutdownHooks() {}
+}
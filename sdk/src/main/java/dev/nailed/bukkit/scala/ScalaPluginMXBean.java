@@ -0,0 +1,58 @@
+package dev.nailed.bukkit.scala;
+
+/**
+ * JMX view of one Scala plugin, registered as
+ * {@code dev.nailed.bukkit.scala:type=ScalaPlugin,name=<plugin>} while the plugin is loaded.
+ * 
+ * Class counts are loadClass() lookups that reached this plugin's ScalaPluginClassLoader,
+ * by where the class came from. Times are cumulative nanoseconds. Runtime figures
+ * (initialization, downloads) belong to the SDK copy shaded into this plugin.
+ */
+public interface ScalaPluginMXBean {
+    
+    String getPluginName();
+    
+    /** isolated, shared or bundled */
+    String getRuntimeMode();
+    
+    String getScalaVersion();
+    
+    long getClassesLoaded();
+    
+    long getBukkitClasses();
+    
+    long getScalaClasses();
+    
+    long getPluginClasses();
+    
+    long getJdkClasses();
+    
+    long getLoadClassTimeNanos();
+    
+    long getFindClassTimeNanos();
+    
+    /** Lookups that found nothing in the plugin's own JARs and were remembered as missing. */
+    long getMisses();
+    
+    /** ClassNotFoundExceptions thrown by loadClass(). */
+    long getClassNotFoundExceptions();
+    
+    /** Time onLoad() waited for the Scala runtime and this plugin's ClassLoader (set up in the background). */
+    long getRuntimeInitTimeNanos();
+    
+    long getDownloadTimeNanos();
+    
+    long getDownloadedBytes();
+    
+    /** How the JavaPlugin reference was injected (bridge, setter, field, ...). */
+    String getInjectionStrategy();
+    
+    long getOnLoadTimeNanos();
+    
+    long getOnEnableTimeNanos();
+    
+    long getOnDisableTimeNanos();
+    
+    /** Lifecycle calls that threw. */
+    long getLifecycleFailures();
+}
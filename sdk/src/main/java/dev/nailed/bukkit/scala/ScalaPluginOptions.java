@@ -0,0 +1,163 @@
+package dev.nailed.bukkit.scala;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+/**
+ * Per-plugin SDK options.
+ *
+ * Options are resolved in this order (first match wins):
+ * 1. Top-level key in plugin.yml (e.g. {@code scala-runtime: shared})
+ * 2. Manifest attribute (e.g. {@code Scala-Runtime: shared})
+ * 3. Server-wide system property (e.g. {@code -Dbukkit.scala.runtime=shared})
+ *
+ * plugin.yml is scanned line by line instead of being parsed as YAML so the
+ * lookup works on every Bukkit version, including 1.8 without a Reader-based
+ * YamlConfiguration loader.
+ */
+final class ScalaPluginOptions {
+
+    static final String RUNTIME_SHARED = "shared";
+    static final String RUNTIME_ISOLATED = "isolated";
+    static final int DEFAULT_RESOURCE_CACHE_KB = 2048;
+
+    private final boolean sharedRuntime;
+    private final boolean classProfile;
+    private final boolean reloadCommand;
+    private final boolean bundledRuntime;
+    private final int resourceCacheKb;
+
+    private ScalaPluginOptions(boolean sharedRuntime, boolean classProfile, boolean reloadCommand, boolean bundledRuntime,
+                               int resourceCacheKb) {
+        this.sharedRuntime = sharedRuntime;
+        this.bundledRuntime = bundledRuntime;
+        this.classProfile = classProfile;
+        this.reloadCommand = reloadCommand;
+        this.resourceCacheKb = resourceCacheKb;
+    }
+
+    /**
+     * Whether this plugin loads Scala classes from the shared per-version runtime
+     * loader instead of defining its own copy of the Scala library.
+     */
+    boolean isSharedRuntime() {
+        return sharedRuntime;
+    }
+
+    /**
+     * Whether the plugin JAR carries a minimized Scala runtime (Maven goal {@code shrink-runtime}).
+     * Not configurable - detected from the JAR contents.
+     */
+    boolean isBundledRuntime() {
+        return bundledRuntime;
+    }
+
+    /**
+     * Whether to record a class-load profile and preload it on later boots.
+     */
+    boolean isClassProfile() {
+        return classProfile;
+    }
+
+    /**
+     * Whether to register the {@code /scalareload} hot-reload command (off unless enabled).
+     */
+    boolean isReloadCommand() {
+        return reloadCommand;
+    }
+
+    /**
+     * Heap budget in KB for inflated resources cached by the plugin's ClassLoader (0 disables the cache).
+     */
+    int getResourceCacheKb() {
+        return resourceCacheKb;
+    }
+
+    /**
+     * Read options from the plugin JAR.
+     */
+    static ScalaPluginOptions load(File pluginJar) {
+        String pluginYml = null;
+        Manifest manifest = null;
+        boolean bundledRuntime = false;
+
+        try (JarFile jar = new JarFile(pluginJar)) {
+            ZipEntry entry = jar.getEntry("plugin.yml");
+            if (entry != null) {
+                StringBuilder sb = new StringBuilder();
+                try (BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(jar.getInputStream(entry), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        sb.append(line).append('\n');
+                    }
+                }
+                pluginYml = sb.toString();
+            }
+            manifest = jar.getManifest();
+            bundledRuntime = jar.getEntry(NestedJar.RUNTIME_ENTRY) != null;
+        } catch (IOException ignored) {
+            // Fall back to system properties only
+        }
+
+        String runtime = option(pluginYml, manifest, "scala-runtime", "Scala-Runtime", "bukkit.scala.runtime");
+        String classProfile = option(pluginYml, manifest, "scala-class-profile", "Scala-Class-Profile", "bukkit.scala.classProfile");
+        String reloadCommand = option(pluginYml, manifest, "scala-reload-command", "Scala-Reload-Command", "bukkit.scala.reloadCommand");
+        String resourceCache = option(pluginYml, manifest, "scala-resource-cache", "Scala-Resource-Cache", "bukkit.scala.resourceCache");
+        return new ScalaPluginOptions(
+            RUNTIME_SHARED.equalsIgnoreCase(runtime),
+            Boolean.parseBoolean(classProfile),
+            Boolean.parseBoolean(reloadCommand),
+            bundledRuntime,
+            parseKb(resourceCache, DEFAULT_RESOURCE_CACHE_KB)
+        );
+    }
+
+    private static int parseKb(String value, int defaultKb) {
+        if (value == null) return defaultKb;
+        try {
+            return Math.max(0, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            return defaultKb;
+        }
+    }
+
+    private static String option(String pluginYml, Manifest manifest, String ymlKey, String manifestKey, String property) {
+        String value = topLevelYamlValue(pluginYml, ymlKey);
+        if (value != null) return value;
+
+        if (manifest != null) {
+            Attributes attributes = manifest.getMainAttributes();
+            value = attributes.getValue(manifestKey);
+            if (value != null && !value.trim().isEmpty()) return value.trim();
+        }
+
+        return System.getProperty(property);
+    }
+
+    private static String topLevelYamlValue(String yaml, String key) {
+        if (yaml == null) return null;
+        String prefix = key + ":";
+        for (String line : yaml.split("\n")) {
+            if (!line.startsWith(prefix)) continue;
+
+            String value = line.substring(prefix.length());
+            int comment = value.indexOf(" #");
+            if (comment >= 0) value = value.substring(0, comment);
+            value = value.trim();
+            if (value.length() >= 2 && (value.charAt(0) == '"' || value.charAt(0) == '\'')
+                    && value.charAt(value.length() - 1) == value.charAt(0)) {
+                value = value.substring(1, value.length() - 1);
+            }
+            return value.isEmpty() ? null : value;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,303 @@
+package dev.nailed.bukkit.scala;
+
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.plugin.Plugin;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Main-thread profiler for what the SDK runs on behalf of a plugin: event handlers registered
+ * through {@code registerEvents}, command executors compiled by {@code CommandTree} and tasks of
+ * the {@code mainThread} ExecutionContext.
+ *
+ * Architecture:
+ * - Off unless the server starts with {@code -Dbukkit.scala.profiler=true}. {@link #ENABLED} is a
+ *   static final, so the JIT folds every {@code start}/{@code stop} pair away when it is off
+ * - {@code -Dbukkit.scala.profiler.sample=N} times only every N-th call of each handler
+ *   (rounded up to a power of two) and scales the counts back up in reports
+ * - Each handler has a {@link Probe}: a ring of 6 log-linear histograms covering 10 seconds each,
+ *   all in one AtomicLongArray, so recording is a few lock-free increments and never allocates.
+ *   Reports merge the slots of the requested window (up to a minute)
+ * - {@code /scalaprof [seconds]} ranks the handlers of every Scala plugin by total and by p99 time;
+ *   it is only registered while profiling is on
+ *
+ * The class is shared with the Scala side of the plugin (like {@link ScalaMetrics}), so probes
+ * created by Scala code land in the same registry as those of the bootstrap.
+ */
+public final class ScalaProfiler {
+
+    /** Whether profiling is on. Read once; constant for the JIT. */
+    public static final boolean ENABLED = Boolean.getBoolean("bukkit.scala.profiler");
+
+    // Record one call in (SAMPLE_MASK + 1)
+    private static final int SAMPLE_MASK = sampleMask(Integer.getInteger("bukkit.scala.profiler.sample", 1));
+
+    static final int WINDOW_SLOTS = 6;
+    static final long SLOT_NANOS = 10_000_000_000L;
+
+    // Per plugin, per handler name
+    private static final ConcurrentMap<String, ConcurrentMap<String, Probe>> probes = new ConcurrentHashMap<>();
+
+    private ScalaProfiler() {}
+
+    /**
+     * The probe of handler {@code name} of {@code plugin}, created on first use, or null while
+     * profiling is off. {@code start} and {@code stop} accept null.
+     */
+    public static Probe probe(String plugin, String name) {
+        if (!ENABLED) return null;
+        return probes.computeIfAbsent(plugin, p -> new ConcurrentHashMap<>())
+            .computeIfAbsent(name, n -> new Probe(name));
+    }
+
+    /**
+     * Start timing a call: a timestamp, or 0 if this call is not recorded.
+     */
+    public static long start(Probe probe) {
+        return ENABLED && probe.sample() ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Record the call started at {@code start}.
+     */
+    public static void stop(Probe probe, long start) {
+        if (ENABLED && start != 0L) {
+            long now = System.nanoTime();
+            probe.record(now - start, now);
+        }
+    }
+
+    /**
+     * Drop the probes of a plugin, e.g. before its Scala code is reloaded.
+     */
+    static void forget(String plugin) {
+        probes.remove(plugin);
+    }
+
+    /**
+     * Figures of every handler of {@code plugin} over the last {@code windowSeconds} (at most 60):
+     * name to {count, total, p99, max}, times in nanoseconds. Handlers without calls are left out.
+     */
+    static Map<String, long[]> report(String plugin, int windowSeconds) {
+        Map<String, long[]> out = new LinkedHashMap<>();
+        Map<String, Probe> ofPlugin = probes.get(plugin);
+        if (ofPlugin == null) return out;
+
+        int slots = (int) Math.max(1, Math.min(WINDOW_SLOTS, (windowSeconds * 1_000_000_000L + SLOT_NANOS - 1) / SLOT_NANOS));
+        long now = System.nanoTime();
+        for (Probe probe : ofPlugin.values()) {
+            long[] figures = probe.figures(now, slots);
+            if (figures[0] > 0) out.put(probe.name, figures);
+        }
+        return out;
+    }
+
+    static int sampleRate() {
+        return SAMPLE_MASK + 1;
+    }
+
+    private static int sampleMask(int rate) {
+        if (rate <= 1) return 0;
+        int powerOfTwo = Integer.highestOneBit(Math.min(rate, 1 << 20) - 1) << 1;
+        return powerOfTwo - 1;
+    }
+
+    /**
+     * Timings of one handler.
+     *
+     * Layout per slot: epoch, count, total, max, then {@link #BUCKETS} histogram buckets. Values
+     * below 8 ns have a bucket each; above that every power of two is split into 8 buckets, so a
+     * bucket is at most 12.5% wide. Counts recorded while a slot is being recycled may be lost.
+     */
+    public static final class Probe {
+
+        static final int BUCKETS = 312; // up to 2^40 ns (~18 minutes)
+        private static final int HEADER = 4;
+        private static final int SLOT_LENGTH = HEADER + BUCKETS;
+        private static final long UNUSED = Long.MIN_VALUE; // epoch of a slot never written
+
+        final String name;
+        private final AtomicLongArray data = new AtomicLongArray(WINDOW_SLOTS * SLOT_LENGTH);
+        private int calls; // sampling counter - racy on purpose, lost updates only shift the sample
+
+        Probe(String name) {
+            this.name = name;
+            for (int slot = 0; slot < WINDOW_SLOTS; slot++) data.set(slot * SLOT_LENGTH, UNUSED);
+        }
+
+        boolean sample() {
+            return SAMPLE_MASK == 0 || (++calls & SAMPLE_MASK) == 0;
+        }
+
+        void record(long nanos, long now) {
+            if (nanos < 0) nanos = 0;
+            long epoch = Math.floorDiv(now, SLOT_NANOS);
+            int base = (int) Math.floorMod(epoch, (long) WINDOW_SLOTS) * SLOT_LENGTH;
+            long seen = data.get(base);
+            if (seen != epoch && data.compareAndSet(base, seen, epoch)) {
+                // First call in a new 10 s slot: recycle it
+                for (int i = base + 1; i < base + SLOT_LENGTH; i++) data.set(i, 0L);
+            }
+            data.incrementAndGet(base + 1);
+            data.addAndGet(base + 2, nanos);
+            long max;
+            while (nanos > (max = data.get(base + 3)) && !data.compareAndSet(base + 3, max, nanos)) {
+                // Retry
+            }
+            data.incrementAndGet(base + HEADER + bucket(nanos));
+        }
+
+        /**
+         * {count, total, p99, max} over the newest {@code slots} slots, scaled by the sample rate.
+         */
+        long[] figures(long now, int slots) {
+            long epoch = Math.floorDiv(now, SLOT_NANOS);
+            long count = 0, total = 0, max = 0;
+            long[] buckets = new long[BUCKETS];
+            for (int slot = 0; slot < WINDOW_SLOTS; slot++) {
+                int base = slot * SLOT_LENGTH;
+                long slotEpoch = data.get(base);
+                if (slotEpoch == UNUSED || slotEpoch > epoch || epoch - slotEpoch >= slots) continue;
+                count += data.get(base + 1);
+                total += data.get(base + 2);
+                max = Math.max(max, data.get(base + 3));
+                for (int b = 0; b < BUCKETS; b++) buckets[b] += data.get(base + HEADER + b);
+            }
+            long p99 = 0;
+            if (count > 0) {
+                long rank = count - count / 100; // ceil(0.99 * count) for counts >= 100
+                long seen = 0;
+                for (int b = 0; b < BUCKETS; b++) {
+                    seen += buckets[b];
+                    if (seen >= rank) {
+                        p99 = Math.min(upperBound(b), max);
+                        break;
+                    }
+                }
+            }
+            int rate = SAMPLE_MASK + 1;
+            return new long[] { count * rate, total * rate, p99, max };
+        }
+
+        static int bucket(long nanos) {
+            if (nanos < 8) return (int) nanos;
+            int exponent = Math.min(63 - Long.numberOfLeadingZeros(nanos), 40);
+            if (exponent == 40 && nanos >= (1L << 41)) return BUCKETS - 1;
+            int sub = (int) (nanos >>> (exponent - 3)) & 7;
+            return (exponent - 2) * 8 + sub;
+        }
+
+        static long upperBound(int bucket) {
+            if (bucket < 8) return bucket;
+            int exponent = bucket / 8 + 2;
+            int sub = bucket % 8;
+            return ((8L + sub + 1) << (exponent - 3)) - 1;
+        }
+    }
+
+    /**
+     * {@code /scalaprof [seconds]} - the slowest SDK handlers of every Scala plugin.
+     *
+     * Registered by every Scala plugin while profiling is on; each plugin's figures are read
+     * through {@link ScalaBootstrap#getProfile(int)} reflectively, because every plugin has its
+     * own shaded copy of this class.
+     */
+    static final class ProfileCommand extends Command {
+
+        static final String PERMISSION = "bukkit.scala.profiler";
+        private static final int TOP = 10;
+
+        private final Plugin owner;
+
+        ProfileCommand(Plugin owner) {
+            super("scalaprof", "Slowest Scala plugin handlers", "/scalaprof [seconds]",
+                java.util.Collections.<String>emptyList());
+            this.owner = owner;
+            setPermission(PERMISSION);
+        }
+
+        @Override
+        public boolean execute(CommandSender sender, String label, String[] args) {
+            if (!testPermission(sender)) return true;
+            int seconds = 60;
+            if (args.length > 0) {
+                try {
+                    seconds = Math.max(1, Math.min(60, Integer.parseInt(args[0])));
+                } catch (NumberFormatException e) {
+                    sender.sendMessage("Usage: " + getUsage());
+                    return true;
+                }
+            }
+
+            List<Row> rows = new ArrayList<>();
+            for (Plugin plugin : owner.getServer().getPluginManager().getPlugins()) {
+                Map<String, long[]> profile = profileOf(plugin, seconds);
+                if (profile == null) continue;
+                for (Map.Entry<String, long[]> entry : profile.entrySet()) {
+                    rows.add(new Row(plugin.getName() + " " + entry.getKey(), entry.getValue()));
+                }
+            }
+            if (rows.isEmpty()) {
+                sender.sendMessage("No Scala handler ran in the last " + seconds + " s");
+                return true;
+            }
+
+            String window = " (last " + seconds + " s" + (SAMPLE_MASK != 0 ? ", 1 in " + sampleRate() + " calls sampled" : "") + ")";
+            rows.sort((a, b) -> Long.compare(b.figures[1], a.figures[1]));
+            sender.sendMessage("Top handlers by total time" + window + ":");
+            print(sender, rows);
+            rows.sort((a, b) -> Long.compare(b.figures[2], a.figures[2]));
+            sender.sendMessage("Top handlers by p99:");
+            print(sender, rows);
+            return true;
+        }
+
+        @Override
+        public List<String> tabComplete(CommandSender sender, String alias, String[] args) {
+            return java.util.Collections.emptyList();
+        }
+
+        private void print(CommandSender sender, List<Row> rows) {
+            for (int i = 0; i < rows.size() && i < TOP; i++) {
+                long[] f = rows.get(i).figures;
+                sender.sendMessage(String.format(Locale.ROOT, " %2d. %s  total %s  calls %d  p99 %s  max %s",
+                    i + 1, rows.get(i).name, millis(f[1]), f[0], millis(f[2]), millis(f[3])));
+            }
+        }
+
+        private static String millis(long nanos) {
+            return String.format(Locale.ROOT, "%.3f ms", nanos / 1_000_000.0);
+        }
+
+        @SuppressWarnings("unchecked")
+        private static Map<String, long[]> profileOf(Plugin plugin, int seconds) {
+            if (!plugin.isEnabled()) return null;
+            try {
+                Method method = plugin.getClass().getMethod("getProfile", int.class);
+                return (Map<String, long[]>) method.invoke(plugin, seconds);
+            } catch (Exception e) {
+                // Not a Scala plugin, or one built against an SDK without the profiler
+                return null;
+            }
+        }
+
+        private static final class Row {
+            final String name;
+            final long[] figures;
+
+            Row(String name, long[] figures) {
+                this.name = name;
+                this.figures = figures;
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package dev.nailed.bukkit.scala;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Resource bridge between the ScalaPluginClassLoader and the Scala plugin.
+ * 
+ * ScalaPluginClassLoader implements this interface and, like {@link ScalaPluginLifecycle}, it is
+ * always loaded by the Bukkit PluginClassLoader, so BukkitPlugin can cast its own ClassLoader to
+ * it and read resources through a plain interface call instead of reflection.
+ */
+public interface ScalaResourceSource {
+    
+    /**
+     * Contents of a resource as a read-only ByteBuffer positioned at 0, or null if it does not exist.
+     */
+    ByteBuffer getResourceBytes(String name) throws IOException;
+}
@@ -3,15 +3,8 @@ package dev.nailed.bukkit.scala;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import java.io.*;
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLClassLoader;
-import java.nio.channels.FileChannel;
-import java.nio.channels.FileLock;
-import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
 import java.util.logging.Logger;
 
 /**
@@ -22,15 +15,30 @@ import java.util.logging.Logger;
  * - Creates a ScalaPluginClassLoader that combines: Scala libs + Plugin JAR + Bukkit API
  * - No injection needed - we control the ClassLoader entirely
  * - Works on all Java versions (8-21+) without JVM args
+ *
+ * Shared runtime mode (opt-in):
+ * - One runtime ClassLoader per Scala version holds only the Scala library JARs
+ * - Each plugin's ScalaPluginClassLoader holds only the plugin JAR and delegates scala.* / dotty.* to it
+ * - Every copy of this class (the SDK is shaded into each plugin) finds the same runtime loader
+ *   through a JVM-wide registry, so scala.* classes are defined and JIT-compiled once per server
  */
 public class ScalaRuntime {
     
-    private static final String SCALA_VERSION = "3.3.1";
+    static final String SCALA_VERSION = "3.3.1";
     private static final String SCALA2_VERSION = "2.13.12";
     private static final String SCALA3_JAR = "scala3-library_3-" + SCALA_VERSION + ".jar";
     private static final String SCALA2_JAR = "scala-library-" + SCALA2_VERSION + ".jar";
     private static final String MAVEN_CENTRAL = "https://repo1.maven.org/maven2";
     
+    // SharedRegistry key for the shared runtime loader of this Scala version.
+    // Registered JVM-wide because each plugin has its own copy of ScalaRuntime.
+    private static final String SHARED_RUNTIME_KEY = 
+        "dev.nailed.bukkit.scala.runtime[" + SCALA_VERSION + "+" + SCALA2_VERSION + "]";
+    
+    // SharedRegistry key for the future of the prepared library JARs (see initializeAsync)
+    private static final String INIT_KEY = 
+        "dev.nailed.bukkit.scala.init[" + SCALA_VERSION + "+" + SCALA2_VERSION + "]";
+    
     private static volatile boolean initialized = false;
     private static volatile File scala3JarFile = null;
     private static volatile File scala2JarFile = null;
@@ -43,6 +51,9 @@ public class ScalaRuntime {
     /**
      * Initialize Scala runtime - downloads libraries if needed.
      * Does NOT inject into any ClassLoader.
+     * 
+     * Blocks until the libraries are ready. If {@link #initializeAsync(Logger)} was called
+     * (by any plugin), this only waits for that background work.
      */
     public static void initialize(Logger logger) {
         if (initialized) return;
@@ -50,30 +61,84 @@ public class ScalaRuntime {
         synchronized (lock) {
             if (initialized) return;
             
+            File[] jars;
             try {
-                File serverRoot = new File(System.getProperty("user.dir"));
-                File libDir = new File(serverRoot, "libraries/scala");
-                if (!libDir.exists()) libDir.mkdirs();
-                
-                scala3JarFile = new File(libDir, SCALA3_JAR);
-                scala2JarFile = new File(libDir, SCALA2_JAR);
-                
-                downloadIfNeeded(libDir, scala3JarFile, 
-                    MAVEN_CENTRAL + "/org/scala-lang/scala3-library_3/" + SCALA_VERSION + "/" + SCALA3_JAR, logger);
-                downloadIfNeeded(libDir, scala2JarFile,
-                    MAVEN_CENTRAL + "/org/scala-lang/scala-library/" + SCALA2_VERSION + "/" + SCALA2_JAR, logger);
-                
-                initialized = true;
-                logger.info("[Scala SDK] Scala " + SCALA_VERSION + " libraries ready");
-                
-            } catch (Exception e) {
-                throw new RuntimeException("[Scala SDK] Failed to initialize Scala runtime", e);
+                jars = initializeAsync(logger).get();
+            } catch (java.util.concurrent.ExecutionException e) {
+                throw new RuntimeException("[Scala SDK] Failed to initialize Scala runtime", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("[Scala SDK] Interrupted while initializing Scala runtime", e);
             }
+            
+            scala3JarFile = jars[0];
+            scala2JarFile = jars[1];
+            initialized = true;
         }
     }
     
     /**
-     * Create a ClassLoader for loading a Scala plugin.
+     * Start preparing the Scala libraries on a background thread, unless that already happened.
+     * 
+     * The future is shared by every copy of this class through {@link SharedRegistry}, so the
+     * libraries are checked (and downloaded) once per server while it keeps loading other
+     * plugins and worlds. A failed attempt is retried by the next caller.
+     * 
+     * @return future of the library JARs {scala3, scala2}
+     */
+    @SuppressWarnings("unchecked")
+    public static java.util.concurrent.CompletableFuture<File[]> initializeAsync(final Logger logger) {
+        while (true) {
+            Object existing = SharedRegistry.get(INIT_KEY);
+            if (existing instanceof java.util.concurrent.CompletableFuture 
+                    && !((java.util.concurrent.CompletableFuture<?>) existing).isCompletedExceptionally()) {
+                return (java.util.concurrent.CompletableFuture<File[]>) existing;
+            }
+            
+            final java.util.concurrent.CompletableFuture<File[]> future = new java.util.concurrent.CompletableFuture<>();
+            boolean claimed = existing == null 
+                ? SharedRegistry.putIfAbsent(INIT_KEY, future) == null 
+                : SharedRegistry.replace(INIT_KEY, existing, future);
+            // Another plugin's copy got there first - use its future
+            if (!claimed) continue;
+            
+            Thread thread = new Thread(() -> {
+                try {
+                    future.complete(prepareLibraries(logger));
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            }, "Scala SDK runtime init");
+            thread.setDaemon(true);
+            // Do not pin the ClassLoader of whichever plugin got here first
+            thread.setContextClassLoader(null);
+            thread.start();
+            return future;
+        }
+    }
+    
+    private static File[] prepareLibraries(Logger logger) throws Exception {
+        File serverRoot = new File(System.getProperty("user.dir"));
+        File libDir = new File(serverRoot, "libraries/scala");
+        if (!libDir.exists()) libDir.mkdirs();
+        
+        File scala3 = new File(libDir, SCALA3_JAR);
+        File scala2 = new File(libDir, SCALA2_JAR);
+        
+        new ArtifactDownloader(ArtifactDownloader.configuredMirrors(MAVEN_CENTRAL), logger).fetchAll(libDir, 
+            java.util.Arrays.asList(
+                new ArtifactDownloader.Artifact("org.scala-lang", "scala3-library_3", SCALA_VERSION, scala3),
+                new ArtifactDownloader.Artifact("org.scala-lang", "scala-library", SCALA2_VERSION, scala2)
+            ));
+        
+        ScalaCds.inspect(libDir, SCALA_VERSION + "+" + SCALA2_VERSION, new File[] { scala3, scala2 }, logger);
+        
+        logger.info("[Scala SDK] Scala " + SCALA_VERSION + " libraries ready");
+        return new File[] { scala3, scala2 };
+    }
+    
+    /**
+     * Create a ClassLoader for loading a Scala plugin with its own copy of the Scala runtime.
      * 
      * @param pluginJar The plugin's JAR file
      * @param pluginClassLoader The Bukkit PluginClassLoader (used as parent for Bukkit API access)
@@ -81,6 +146,21 @@ public class ScalaRuntime {
      * @return ClassLoader that can load Scala classes and the plugin
      */
     public static ClassLoader createPluginClassLoader(File pluginJar, ClassLoader pluginClassLoader, Logger logger) {
+        return createPluginClassLoader(pluginJar, pluginClassLoader, false, logger);
+    }
+    
+    /**
+     * Create a ClassLoader for loading a Scala plugin.
+     * 
+     * @param pluginJar The plugin's JAR file
+     * @param pluginClassLoader The Bukkit PluginClassLoader (used as parent for Bukkit API access)
+     * @param sharedRuntime If true, Scala classes come from the shared per-version runtime loader
+     *                      and the returned loader only holds the plugin JAR
+     * @param logger Logger for messages
+     * @return ClassLoader that can load Scala classes and the plugin
+     */
+    public static ClassLoader createPluginClassLoader(File pluginJar, ClassLoader pluginClassLoader, 
+                                                      boolean sharedRuntime, Logger logger) {
         if (!initialized) {
             throw new IllegalStateException("Scala runtime not initialized");
         }
@@ -94,16 +174,54 @@ public class ScalaRuntime {
         }
         
         try {
-            URL[] urls = new URL[] {
-                scala3JarFile.toURI().toURL(),
-                scala2JarFile.toURI().toURL(),
-                pluginJar.toURI().toURL()
-            };
+            ScalaPluginClassLoader loader;
+            if (sharedRuntime) {
+                URL[] urls = new URL[] { pluginJar.toURI().toURL() };
+                loader = new ScalaPluginClassLoader(urls, pluginClassLoader, getSharedRuntimeLoader(logger));
+            } else {
+                URL[] urls = new URL[] {
+                    scala3JarFile.toURI().toURL(),
+                    scala2JarFile.toURI().toURL(),
+                    pluginJar.toURI().toURL()
+                };
+                loader = new ScalaPluginClassLoader(urls, pluginClassLoader);
+            }
+            pluginClassLoaders.put(pluginPath, loader);
             
-            ScalaPluginClassLoader loader = new ScalaPluginClassLoader(urls, pluginClassLoader);
+            logger.info("[Scala SDK] Created " + (sharedRuntime ? "shared-runtime " : "") 
+                + "ClassLoader for " + pluginJar.getName());
+            return loader;
+            
+        } catch (Exception e) {
+            throw new RuntimeException("[Scala SDK] Failed to create plugin ClassLoader", e);
+        }
+    }
+    
+    /**
+     * Create a ClassLoader for a plugin that bundles its own minimized Scala runtime.
+     * 
+     * The runtime is mapped from the plugin JAR like any other nested library, so neither
+     * {@link #initialize(Logger)} nor a download is needed.
+     * 
+     * @param pluginJar The plugin's JAR file (containing META-INF/bukkit-scala/scala-runtime.jar)
+     * @param pluginClassLoader The Bukkit PluginClassLoader (used as parent for Bukkit API access)
+     * @param logger Logger for messages
+     * @return ClassLoader that can load Scala classes and the plugin
+     */
+    public static ClassLoader createBundledPluginClassLoader(File pluginJar, ClassLoader pluginClassLoader, Logger logger) {
+        String pluginPath = pluginJar.getAbsolutePath();
+        
+        ScalaPluginClassLoader cached = pluginClassLoaders.get(pluginPath);
+        if (cached != null) {
+            return cached;
+        }
+        
+        try {
+            ScalaPluginClassLoader loader = new ScalaPluginClassLoader(
+                new URL[] { pluginJar.toURI().toURL() }, pluginClassLoader);
             pluginClassLoaders.put(pluginPath, loader);
             
-            logger.info("[Scala SDK] Created ClassLoader for " + pluginJar.getName());
+            logger.info("[Scala SDK] Created ClassLoader with bundled Scala runtime for " + pluginJar.getName());
             return loader;
             
         } catch (Exception e) {
@@ -111,6 +229,45 @@ public class ScalaRuntime {
         }
     }
     
+    /**
+     * Get (or create) the ClassLoader holding only the Scala library JARs for this Scala version.
+     * 
+     * The loader is a plain URLClassLoader so it does not pin the PluginClassLoader of whichever
+     * plugin happened to create it. Its parent is the platform loader (Java 9+) or bootstrap (Java 8),
+     * so it never sees Bukkit or plugin classes - the Scala library does not need them.
+     */
+    static ClassLoader getSharedRuntimeLoader(Logger logger) throws Exception {
+        Object existing = SharedRegistry.get(SHARED_RUNTIME_KEY);
+        if (existing instanceof ClassLoader) {
+            return (ClassLoader) existing;
+        }
+        
+        URL[] urls = new URL[] {
+            scala3JarFile.toURI().toURL(),
+            scala2JarFile.toURI().toURL()
+        };
+        URLClassLoader runtimeLoader = new URLClassLoader(urls, platformClassLoader());
+        existing = SharedRegistry.putIfAbsent(SHARED_RUNTIME_KEY, runtimeLoader);
+        if (existing != null) {
+            // Another plugin's copy created one concurrently; nothing was loaded through ours
+            runtimeLoader.close();
+            return (ClassLoader) existing;
+        }
+        
+        logger.info("[Scala SDK] Created shared Scala " + SCALA_VERSION + " runtime ClassLoader");
+        return runtimeLoader;
+    }
+    
+    private static ClassLoader platformClassLoader() {
+        try {
+            // Java 9+: ClassLoader.getPlatformClassLoader()
+            return (ClassLoader) ClassLoader.class.getMethod("getPlatformClassLoader").invoke(null);
+        } catch (Exception e) {
+            // Java 8: bootstrap + extension classes
+            return null;
+        }
+    }
+    
     /**
      * Get ClassLoader for a plugin (must be created first).
      */
@@ -118,27 +275,149 @@ public class ScalaRuntime {
         return pluginClassLoaders.get(pluginJar.getAbsolutePath());
     }
     
+    /**
+     * Release a plugin's ClassLoader after its Scala code has been disabled.
+     * 
+     * The loader is evicted from the cache (so the next createPluginClassLoader() reads the JAR
+     * again), detached from every thread that still has it as context ClassLoader - scheduler and
+     * async pool threads outlive the plugin - and closed, which releases the JAR file handles.
+     * A leak detector then warns if the loader is not garbage collected.
+     * 
+     * The shared runtime loader is never closed; other plugins may still use it.
+     * 
+     * @return true if a loader was released
+     */
+    public static boolean releasePluginClassLoader(File pluginJar, Logger logger) {
+        ScalaPluginClassLoader loader = pluginClassLoaders.remove(pluginJar.getAbsolutePath());
+        if (loader == null) return false;
+        
+        int detached = clearContextClassLoader(loader);
+        if (detached > 0) {
+            logger.fine("[Scala SDK] Cleared context ClassLoader of " + detached + " thread(s)");
+        }
+        
+        try {
+            loader.close();
+        } catch (IOException e) {
+            logger.warning("[Scala SDK] Failed to close ClassLoader for " + pluginJar.getName() + ": " + e.getMessage());
+        }
+        
+        LoaderLeakDetector.watch(loader, pluginJar.getName(), logger);
+        logger.info("[Scala SDK] Released ClassLoader for " + pluginJar.getName());
+        return true;
+    }
+    
+    /**
+     * Reset the context ClassLoader of every live thread that points at {@code loader}.
+     */
+    private static int clearContextClassLoader(ClassLoader loader) {
+        ClassLoader replacement = ClassLoader.getSystemClassLoader();
+        int cleared = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            try {
+                if (thread.getContextClassLoader() == loader) {
+                    thread.setContextClassLoader(replacement);
+                    cleared++;
+                }
+            } catch (SecurityException ignored) {
+                // Thread we are not allowed to touch
+            }
+        }
+        return cleared;
+    }
+    
     /**
      * Custom ClassLoader for Scala plugins.
      * 
      * Loading order:
      * 1. Bootstrap classes (java.*, javax.*)
      * 2. Bukkit API classes (from parent PluginClassLoader)
-     * 3. Scala library classes (from our URLs)
+     * 3. Scala library classes (from the shared runtime loader, or our URLs when isolated)
      * 4. Plugin classes (from our URLs)
      * 
      * This ensures:
      * - Bukkit API is shared with other plugins
-     * - Scala runtime is isolated per-plugin (no conflicts)
+     * - Scala runtime is isolated per-plugin (no conflicts) unless shared mode is enabled
      * - Plugin classes can use both Bukkit and Scala
+     * 
+     * Lookups are routed by package: the central directory of every URL is scanned once at
+     * construction, so each name goes straight to the one source that owns its package instead
+     * of probing findClass() and catching ClassNotFoundException. Names known to be missing from
+     * our own JARs are remembered in a bounded negative cache.
+     * 
+     * The loader is registered as parallel capable, so getClassLoadingLock() hands out one lock
+     * per class name and threads from async pools load unrelated classes concurrently instead of
+     * serializing on the loader monitor.
      */
-    public static class ScalaPluginClassLoader extends URLClassLoader {
+    public static class ScalaPluginClassLoader extends URLClassLoader implements ScalaResourceSource {
+        
+        static {
+            // URLClassLoader is parallel capable, so this takes effect for our subclass
+            ClassLoader.registerAsParallelCapable();
+        }
+        
+        private static final int MISSING_CACHE_LIMIT = 4096;
+        
+        // SDK types that cross the bootstrap/Scala boundary. They must resolve to the copy loaded
+        // by the Bukkit PluginClassLoader, otherwise instanceof checks in ScalaBootstrap fail.
+        private static final java.util.Set<String> BRIDGE_CLASSES = new java.util.HashSet<>(java.util.Arrays.asList(
+            "dev.nailed.bukkit.scala.ScalaPluginLifecycle",
+            "dev.nailed.bukkit.scala.ScalaResourceSource",
+            "dev.nailed.bukkit.scala.ScalaMetrics",
+            "dev.nailed.bukkit.scala.ScalaMetrics$Listener",
+            "dev.nailed.bukkit.scala.ScalaProfiler",
+            "dev.nailed.bukkit.scala.ScalaProfiler$Probe"
+        ));
         
         private final ClassLoader bukkitClassLoader;
+        private final ClassLoader scalaRuntimeLoader; // null when the Scala libs are in our URLs
+        
+        // Packages (dot-separated, "" for the default package) that have class files in our URLs.
+        // null if some URL could not be indexed - then we fall back to probing findClass().
+        private final java.util.Set<String> ownedPackages;
+        
+        // Class names we own the package of but that do not exist in our URLs.
+        // Cleared when full rather than evicting one by one - misses are cheap to re-learn.
+        private final java.util.Set<String> missingClasses = 
+            java.util.Collections.newSetFromMap(new java.util.concurrent.ConcurrentHashMap<String, Boolean>());
+        
+        // JARs nested under META-INF/lib/ of our URLs, and per package the nested JARs that have
+        // classes in it, in JAR order. Split packages list several JARs (and may be owned too).
+        private final NestedJar.Handler nestedHandler = new NestedJar.Handler();
+        private final java.util.List<NestedJar> nestedJars = new java.util.ArrayList<>();
+        private final java.util.Map<String, NestedJar[]> nestedPackages = new java.util.HashMap<>();
+        
+        // Non-null while a class-load profile is being recorded
+        private volatile java.util.Queue<String> recording = null;
+        
+        // Counters behind the plugin's MXBean
+        private final ScalaMetrics.LoaderStats stats = new ScalaMetrics.LoaderStats();
+        
+        // Resources of our URLs, indexed on first use. Unavailable if some URL cannot be indexed.
+        private final Object resourceLock = new Object();
+        private volatile ResourceStore resources = null;
+        private volatile boolean resourcesUnavailable = false;
+        private volatile long resourceCacheLimit = ScalaPluginOptions.DEFAULT_RESOURCE_CACHE_KB * 1024L;
         
         public ScalaPluginClassLoader(URL[] urls, ClassLoader bukkitClassLoader) {
+            this(urls, bukkitClassLoader, null);
+        }
+        
+        public ScalaPluginClassLoader(URL[] urls, ClassLoader bukkitClassLoader, ClassLoader scalaRuntimeLoader) {
             super(urls, null); // null parent - we handle delegation manually
             this.bukkitClassLoader = bukkitClassLoader;
+            this.scalaRuntimeLoader = scalaRuntimeLoader;
+            this.ownedPackages = indexPackages(urls);
+            if (ownedPackages != null) {
+                openNestedJars(urls);
+            }
+        }
+        
+        /**
+         * Whether Scala classes come from the shared runtime loader.
+         */
+        public boolean isSharedRuntime() {
+            return scalaRuntimeLoader != null;
         }
         
         @Override
@@ -146,50 +425,255 @@ public class ScalaRuntime {
             synchronized (getClassLoadingLock(name)) {
                 // 1. Check if already loaded
                 Class<?> c = findLoadedClass(name);
-                if (c != null) {
-                    if (resolve) resolveClass(c);
-                    return c;
+                if (c == null) {
+                    long start = System.nanoTime();
+                    try {
+                        c = locateClass(name);
+                    } catch (ClassNotFoundException e) {
+                        stats.recordNotFound(name, System.nanoTime() - start);
+                        throw e;
+                    }
+                    stats.recordLoad(name, c, this, System.nanoTime() - start);
+                    
+                    java.util.Queue<String> profile = recording;
+                    if (profile != null) profile.add(name);
                 }
-                
-                // 2. Bootstrap classes - delegate to system
-                if (name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("sun.") || name.startsWith("jdk.")) {
-                    return getSystemClassLoader().loadClass(name);
+                if (resolve) resolveClass(c);
+                return c;
+            }
+        }
+        
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            long start = System.nanoTime();
+            try {
+                return super.findClass(name);
+            } finally {
+                stats.findNanos.add(System.nanoTime() - start);
+            }
+        }
+        
+        /**
+         * Class-loading counters of this loader. Times are inclusive: loading a class
+         * that triggers loading its superclass counts the superclass time twice.
+         */
+        ScalaMetrics.LoaderStats stats() {
+            return stats;
+        }
+        
+        /**
+         * Start recording, in order, the names of classes loaded through this loader.
+         */
+        public void startRecording() {
+            recording = new java.util.concurrent.ConcurrentLinkedQueue<>();
+        }
+        
+        /**
+         * Stop recording and return the recorded class names (empty if not recording).
+         */
+        public java.util.List<String> stopRecording() {
+            java.util.Queue<String> profile = recording;
+            recording = null;
+            return profile == null 
+                ? java.util.Collections.<String>emptyList() 
+                : new java.util.ArrayList<>(profile);
+        }
+        
+        private Class<?> locateClass(String name) throws ClassNotFoundException {
+            // 2. Bootstrap classes - delegate to system
+            if (name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("sun.") || name.startsWith("jdk.")) {
+                return getSystemClassLoader().loadClass(name);
+            }
+            
+            // SDK bridge interfaces - always the bootstrap's copy
+            if (BRIDGE_CLASSES.contains(name)) {
+                return bukkitClassLoader.loadClass(name);
+            }
+            
+            boolean scalaClass = name.startsWith("scala.") || name.startsWith("dotty.");
+            if (scalaClass && scalaRuntimeLoader != null) {
+                return scalaRuntimeLoader.loadClass(name);
+            }
+            
+            if (ownedPackages == null) {
+                return probeClass(name, scalaClass);
+            }
+            
+            String packageName = packageOf(name);
+            boolean owned = ownedPackages.contains(packageName);
+            NestedJar[] nested = nestedPackages.get(packageName);
+            
+            // 3. Bukkit/Spigot/Paper API - delegate to Bukkit ClassLoader
+            if (isBukkitClass(name)) {
+                if (!owned && nested == null) return bukkitClassLoader.loadClass(name);
+                try {
+                    return bukkitClassLoader.loadClass(name);
+                } catch (ClassNotFoundException ignored) {
+                    // Fall through to our URLs (e.g. a shaded copy of an API the server lacks)
                 }
-                
-                // 3. Bukkit/Spigot/Paper API - delegate to Bukkit ClassLoader
-                if (isBukkitClass(name)) {
+            }
+            
+            if ((owned || nested != null) && !missingClasses.contains(name)) {
+                // 4./5. Scala library and plugin classes - our URLs
+                if (owned) {
                     try {
-                        c = bukkitClassLoader.loadClass(name);
-                        if (resolve) resolveClass(c);
-                        return c;
+                        return findClass(name);
                     } catch (ClassNotFoundException ignored) {
-                        // Fall through to try our URLs
+                        // Split package - the class may be in a nested JAR
                     }
                 }
                 
-                // 4. Scala classes - load from our URLs (child-first)
-                if (name.startsWith("scala.") || name.startsWith("dotty.")) {
-                    try {
-                        c = findClass(name);
-                        if (resolve) resolveClass(c);
-                        return c;
-                    } catch (ClassNotFoundException ignored) {
-                        // Fall through
+                // 5b. Libraries nested in the plugin JAR (META-INF/lib/*.jar), in JAR order
+                if (nested != null) {
+                    for (NestedJar jar : nested) {
+                        Class<?> c = defineNestedClass(name, packageName, jar);
+                        if (c != null) return c;
                     }
                 }
-                
-                // 5. Plugin classes - try our URLs first
+                rememberMissing(name);
+            }
+            
+            // 6. Last resort - try Bukkit ClassLoader (for cross-plugin dependencies)
+            return bukkitClassLoader.loadClass(name);
+        }
+        
+        private Class<?> defineNestedClass(String name, String packageName, NestedJar jar) throws ClassNotFoundException {
+            long start = System.nanoTime();
+            try {
+                return readNestedClass(name, packageName, jar);
+            } finally {
+                stats.findNanos.add(System.nanoTime() - start);
+            }
+        }
+        
+        private Class<?> readNestedClass(String name, String packageName, NestedJar jar) throws ClassNotFoundException {
+            java.nio.ByteBuffer bytes;
+            try {
+                bytes = jar.read(name.replace('.', '/') + ".class");
+            } catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+            if (bytes == null) return null;
+            
+            if (!packageName.isEmpty() && getPackage(packageName) == null) {
                 try {
-                    c = findClass(name);
-                    if (resolve) resolveClass(c);
-                    return c;
+                    definePackage(packageName, null, null, null, null, null, null, null);
+                } catch (IllegalArgumentException ignored) {
+                    // Defined concurrently by another thread
+                }
+            }
+            return defineClass(name, bytes, jar.codeSource());
+        }
+        
+        /**
+         * Unindexed lookup: try each source in turn.
+         */
+        private Class<?> probeClass(String name, boolean scalaClass) throws ClassNotFoundException {
+            if (isBukkitClass(name)) {
+                try {
+                    return bukkitClassLoader.loadClass(name);
                 } catch (ClassNotFoundException ignored) {
-                    // Fall through
+                    // Fall through to try our URLs
+                }
+            }
+            
+            if (!missingClasses.contains(name)) {
+                try {
+                    return findClass(name);
+                } catch (ClassNotFoundException e) {
+                    rememberMissing(name);
+                }
+            }
+            
+            return bukkitClassLoader.loadClass(name);
+        }
+        
+        private void rememberMissing(String name) {
+            stats.misses.increment();
+            if (missingClasses.size() >= MISSING_CACHE_LIMIT) {
+                missingClasses.clear();
+            }
+            missingClasses.add(name);
+        }
+        
+        private static String packageOf(String className) {
+            int dot = className.lastIndexOf('.');
+            return dot < 0 ? "" : className.substring(0, dot);
+        }
+        
+        private static java.util.Set<String> indexPackages(URL[] urls) {
+            java.util.Set<String> packages = new java.util.HashSet<>();
+            for (URL url : urls) {
+                File file;
+                try {
+                    if (!"file".equals(url.getProtocol())) return null;
+                    file = new File(url.toURI());
+                } catch (Exception e) {
+                    return null;
                 }
+                if (!file.isFile()) return null;
                 
-                // 6. Last resort - try Bukkit ClassLoader (for cross-plugin dependencies)
-                return bukkitClassLoader.loadClass(name);
+                try {
+                    for (ZipDirectory.Entry entry : ZipDirectory.read(file).entries()) {
+                        addPackage(packages, entry.name);
+                    }
+                } catch (IOException e) {
+                    // ZIP64 or unusual layout - let ZipFile read it
+                    try (java.util.zip.ZipFile zip = new java.util.zip.ZipFile(file)) {
+                        java.util.Enumeration<? extends java.util.zip.ZipEntry> entries = zip.entries();
+                        while (entries.hasMoreElements()) {
+                            addPackage(packages, entries.nextElement().getName());
+                        }
+                    } catch (IOException e2) {
+                        return null;
+                    }
+                }
             }
+            return packages;
+        }
+        
+        /**
+         * Map JARs nested under META-INF/lib/ (and a bundled Scala runtime) and index their packages.
+         * Our URLs are searched before nested JARs, nested JARs in the order they are found.
+         */
+        private void openNestedJars(URL[] urls) {
+            java.util.Map<String, java.util.List<NestedJar>> byPackage = new java.util.HashMap<>();
+            for (URL url : urls) {
+                File file;
+                try {
+                    file = new File(url.toURI());
+                } catch (Exception e) {
+                    continue;
+                }
+                
+                try (java.nio.channels.FileChannel channel = java.nio.channels.FileChannel.open(
+                        file.toPath(), java.nio.file.StandardOpenOption.READ)) {
+                    for (ZipDirectory.Entry entry : ZipDirectory.read(channel, file.toString()).entries()) {
+                        if (!NestedJar.isNestedJar(entry.name)) continue;
+                        
+                        NestedJar jar = NestedJar.open(file, channel, entry, nestedHandler);
+                        nestedHandler.register(jar);
+                        nestedJars.add(jar);
+                        
+                        java.util.Set<String> packages = new java.util.HashSet<>();
+                        for (String name : jar.entryNames()) addPackage(packages, name);
+                        for (String pkg : packages) {
+                            byPackage.computeIfAbsent(pkg, p -> new java.util.ArrayList<>(1)).add(jar);
+                        }
+                    }
+                } catch (IOException e) {
+                    // Unreadable or ZIP64 - nested libraries are not available from this URL
+                }
+            }
+            for (java.util.Map.Entry<String, java.util.List<NestedJar>> entry : byPackage.entrySet()) {
+                nestedPackages.put(entry.getKey(), entry.getValue().toArray(new NestedJar[0]));
+            }
+        }
+        
+        private static void addPackage(java.util.Set<String> packages, String entryName) {
+            if (!entryName.endsWith(".class") || entryName.startsWith("META-INF/")) return;
+            int slash = entryName.lastIndexOf('/');
+            packages.add(slash < 0 ? "" : entryName.substring(0, slash).replace('/', '.'));
         }
         
         private boolean isBukkitClass(String name) {
@@ -202,18 +686,143 @@ public class ScalaRuntime {
                    name.startsWith("net.md_5.bungee.");
         }
         
+        @Override
+        public URL findResource(String name) {
+            URL url = super.findResource(name);
+            if (url != null || nestedJars.isEmpty()) return url;
+            
+            for (NestedJar jar : nestedJars) {
+                if (jar.contains(name)) {
+                    try {
+                        return jar.entryUrl(name, nestedHandler);
+                    } catch (java.net.MalformedURLException ignored) {
+                        // Cannot happen with our own handler
+                    }
+                }
+            }
+            return null;
+        }
+        
+        @Override
+        public java.util.Enumeration<URL> findResources(String name) throws IOException {
+            java.util.Enumeration<URL> urls = super.findResources(name);
+            if (nestedJars.isEmpty()) return urls;
+            
+            java.util.List<URL> all = java.util.Collections.list(urls);
+            for (NestedJar jar : nestedJars) {
+                if (jar.contains(name)) all.add(jar.entryUrl(name, nestedHandler));
+            }
+            return java.util.Collections.enumeration(all);
+        }
+        
         @Override
         public URL getResource(String name) {
             // Try our URLs first
             URL url = findResource(name);
             if (url != null) return url;
             
+            // Then the shared Scala runtime (e.g. library.properties)
+            if (scalaRuntimeLoader != null) {
+                url = scalaRuntimeLoader.getResource(name);
+                if (url != null) return url;
+            }
+            
             // Then Bukkit
             return bukkitClassLoader.getResource(name);
         }
         
+        /**
+         * Contents of a resource as a read-only ByteBuffer, looked up like {@link #getResource(String)}.
+         * 
+         * Resources of our own JARs (and JARs nested in them) come from a memory mapping: stored
+         * entries are views without a copy, deflated ones are inflated once and cached while small.
+         * Other resources (shared runtime, Bukkit) are read from their URL each time.
+         * 
+         * @return the contents positioned at 0, or null if the resource does not exist
+         */
+        @Override
+        public java.nio.ByteBuffer getResourceBytes(String name) throws IOException {
+            java.nio.ByteBuffer own = readOwnResource(name);
+            if (own != null) return own;
+            
+            URL url = getResource(name);
+            if (url == null) return null;
+            try (InputStream in = url.openStream()) {
+                return java.nio.ByteBuffer.wrap(readFully(in)).asReadOnlyBuffer();
+            }
+        }
+        
+        /**
+         * Set the heap budget for cached inflated resources. Only effective before the first resource read.
+         */
+        void setResourceCacheLimit(long bytes) {
+            resourceCacheLimit = bytes;
+        }
+        
+        /**
+         * A resource of our URLs or nested JARs, or null if it is not one (or cannot be served from the store).
+         */
+        private java.nio.ByteBuffer readOwnResource(String name) throws IOException {
+            ResourceStore store = resources();
+            if (store == null || !ResourceStore.isIndexed(name)) return null;
+            if (store.contains(name)) return store.read(name);
+            
+            // Not in our URLs - nested JARs come next, as in findResource()
+            for (NestedJar jar : nestedJars) {
+                if (jar.contains(name)) return jar.read(name);
+            }
+            return null;
+        }
+        
+        private ResourceStore resources() {
+            ResourceStore store = resources;
+            if (store != null || resourcesUnavailable) return store;
+            synchronized (resourceLock) {
+                if (resources == null && !resourcesUnavailable) {
+                    store = ResourceStore.open(getURLs(), resourceCacheLimit);
+                    if (store == null) resourcesUnavailable = true;
+                    resources = store;
+                }
+                return resources;
+            }
+        }
+        
+        private static byte[] readFully(InputStream in) throws IOException {
+            java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+        
+        @Override
+        public void close() throws IOException {
+            super.close();
+            // Forget the nested JARs so they stop resolving. Their mappings are not unmapped
+            // explicitly: buffers handed out may still view them, so they go once unreachable.
+            nestedHandler.clear();
+            nestedJars.clear();
+            nestedPackages.clear();
+            missingClasses.clear();
+            recording = null;
+            synchronized (resourceLock) {
+                resourcesUnavailable = true;
+                if (resources != null) resources.close();
+                resources = null;
+            }
+        }
+        
         @Override
         public InputStream getResourceAsStream(String name) {
+            try {
+                java.nio.ByteBuffer own = readOwnResource(name);
+                if (own != null) return new NestedJar.ByteBufferInputStream(own);
+            } catch (IOException ignored) {
+                // Fall back to the URL
+            }
+            
             URL url = getResource(name);
             if (url != null) {
                 try {
@@ -236,94 +845,4 @@ public class ScalaRuntime {
         throw new UnsupportedOperationException(
             "getClassLoader() is deprecated. Use createPluginClassLoader() instead.");
     }
-    
-    private static void downloadIfNeeded(File libDir, File target, String url, Logger logger) throws Exception {
-        if (target.exists() && target.length() > 0) return;
-        
-        File lockFile = new File(libDir, ".download.lock");
-        if (!lockFile.exists()) lockFile.createNewFile();
-        
-        try (FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.WRITE)) {
-            FileLock fileLock = channel.lock();
-            try {
-                // Double-check after acquiring lock
-                if (!target.exists() || target.length() == 0) {
-                    logger.info("[Scala SDK] Downloading " + target.getName() + "...");
-                    File tempFile = new File(target.getParentFile(), target.getName() + ".tmp");
-                    try {
-                        downloadFile(url, tempFile, logger);
-                        // Atomic move
-                        if (!tempFile.renameTo(target)) {
-                            // Fallback: copy and delete
-                            copyFile(tempFile, target);
-                            tempFile.delete();
-                        }
-                    } catch (Exception e) {
-                        tempFile.delete();
-                        throw e;
-                    }
-                }
-            } finally {
-                fileLock.release();
-            }
-        }
-    }
-    
-    private static void copyFile(File src, File dst) throws IOException {
-        try (InputStream in = new FileInputStream(src);
-             OutputStream out = new FileOutputStream(dst)) {
-            byte[] buffer = new byte[8192];
-            int len;
-            while ((len = in.read(buffer)) > 0) {
-                out.write(buffer, 0, len);
-            }
-        }
-    }
-    
-    private static void downloadFile(String urlStr, File target, Logger logger) throws Exception {
-        HttpURLConnection conn = null;
-        InputStream in = null;
-        FileOutputStream out = null;
-        
-        try {
-            conn = (HttpURLConnection) new URL(urlStr).openConnection();
-            conn.setConnectTimeout(30000);
-            conn.setReadTimeout(60000);
-            conn.setRequestProperty("User-Agent", "Bukkit-Scala-SDK/1.0");
-            
-            int responseCode = conn.getResponseCode();
-            if (responseCode != 200) {
-                throw new IOException("HTTP " + responseCode + " for " + urlStr);
-            }
-            
-            long totalSize = conn.getContentLengthLong();
-            in = conn.getInputStream();
-            out = new FileOutputStream(target);
-            
-            byte[] buffer = new byte[8192];
-            int bytesRead;
-            long downloaded = 0;
-            int lastProgress = 0;
-            
-            while ((bytesRead = in.read(buffer)) != -1) {
-                out.write(buffer, 0, bytesRead);
-                downloaded += bytesRead;
-                
-                if (totalSize > 0) {
-                    int progress = (int) ((downloaded * 100) / totalSize);
-                    if (progress >= lastProgress + 20) {
-                        logger.info("[Scala SDK] Progress: " + progress + "%");
-                        lastProgress = progress;
-                    }
-                }
-            }
-            
-            logger.info("[Scala SDK] Downloaded " + (downloaded / 1024) + " KB");
-            
-        } finally {
-            if (in != null) try { in.close(); } catch (Exception ignored) {}
-            if (out != null) try { out.close(); } catch (Exception ignored) {}
-            if (conn != null) conn.disconnect();
-        }
-    }
 }
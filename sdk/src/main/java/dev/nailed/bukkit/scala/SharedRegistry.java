@@ -0,0 +1,78 @@
+package dev.nailed.bukkit.scala;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+
+/**
+ * JVM-wide map of objects shared by every plugin's copy of the SDK (each plugin shades its own,
+ * so a static field is per plugin).
+ *
+ * Architecture:
+ * - The map lives in a private MBeanServer of its own (default domain {@link #DOMAIN}), found
+ *   through {@code MBeanServerFactory.findMBeanServer}. It is never registered with the platform
+ *   MBeanServer, so JConsole, JMX agents and exporters cannot see or modify it
+ * - The one MBean there is a completed Future over the ConcurrentMap interface: its only
+ *   operations are {@code get} (the map, handed over by reference) and a no-op {@code cancel}.
+ *   No map operation is exposed over JMX; copies use the map directly once they have it
+ * - Every class involved is loaded by the JDK, so the registry never pins the ClassLoader of the
+ *   plugin that created it
+ * - Callers combine {@code get}, {@code putIfAbsent} and {@code replace}; no JVM-wide lock
+ */
+final class SharedRegistry {
+
+    // Internal to the SDK - not a management domain
+    static final String DOMAIN = "dev.nailed.bukkit.scala.internal";
+
+    private static volatile ConcurrentMap<String, Object> map;
+
+    private SharedRegistry() {}
+
+    /** The value of {@code key}, or null. */
+    static Object get(String key) {
+        return map().get(key);
+    }
+
+    /** Store {@code value} unless {@code key} has one. Returns the existing value, or null if stored. */
+    static Object putIfAbsent(String key, Object value) {
+        return map().putIfAbsent(key, value);
+    }
+
+    /** Replace {@code expected} with {@code value}. False if {@code key} holds something else. */
+    static boolean replace(String key, Object expected, Object value) {
+        return map().replace(key, expected, value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ConcurrentMap<String, Object> map() {
+        ConcurrentMap<String, Object> found = map;
+        if (found != null) return found;
+
+        // MBeanServerFactory synchronizes on its class too, so find-or-create is atomic JVM-wide
+        synchronized (MBeanServerFactory.class) {
+            try {
+                ObjectName name = new ObjectName(DOMAIN + ":type=SharedRegistry");
+                MBeanServer server = null;
+                for (MBeanServer candidate : MBeanServerFactory.findMBeanServer(null)) {
+                    if (DOMAIN.equals(candidate.getDefaultDomain())) server = candidate;
+                }
+                if (server == null) {
+                    server = MBeanServerFactory.createMBeanServer(DOMAIN);
+                    ConcurrentMap<String, Object> created = new ConcurrentHashMap<>();
+                    server.registerMBean(new StandardMBean(CompletableFuture.completedFuture(created), Future.class), name);
+                }
+                found = (ConcurrentMap<String, Object>) server.invoke(name, "get", new Object[0], new String[0]);
+            } catch (JMException e) {
+                throw new IllegalStateException("[Scala SDK] Shared registry unavailable", e);
+            }
+        }
+        map = found;
+        return found;
+    }
+}
@@ -0,0 +1,206 @@
+package dev.nailed.bukkit.scala;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Minimal reader for the central directory of a ZIP/JAR file.
+ *
+ * Reads the end-of-central-directory record and the central directory in one
+ * pass, without opening a ZipFile or inflating anything. Used to index which
+ * packages a JAR owns when a ScalaPluginClassLoader is created, and to locate
+ * entries of JARs nested inside the plugin JAR.
+ *
+ * ZIP64 archives and multi-disk archives are not supported; callers fall back
+ * to {@link java.util.zip.ZipFile} when {@link #read(File)} throws.
+ */
+final class ZipDirectory {
+
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int CEN_SIGNATURE = 0x02014b50;
+    private static final int EOCD_MIN_SIZE = 22;
+    private static final int CEN_HEADER_SIZE = 46;
+    private static final int LOC_SIGNATURE = 0x04034b50;
+    private static final int LOC_HEADER_SIZE = 30;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    static final int METHOD_STORED = 0;
+    static final int METHOD_DEFLATED = 8;
+
+    /**
+     * One central directory record.
+     */
+    static final class Entry {
+        final String name;
+        final int method;
+        final long compressedSize;
+        final long size;
+        final long localHeaderOffset;
+
+        Entry(String name, int method, long compressedSize, long size, long localHeaderOffset) {
+            this.name = name;
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        boolean isDirectory() {
+            return name.endsWith("/");
+        }
+    }
+
+    private final List<Entry> entries;
+
+    private ZipDirectory(List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    List<Entry> entries() {
+        return entries;
+    }
+
+    /**
+     * Read the central directory of a ZIP file.
+     */
+    static ZipDirectory read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return read(channel, file.toString());
+        }
+    }
+    
+    /**
+     * Read the central directory of a ZIP file open as a channel.
+     */
+    static ZipDirectory read(final FileChannel channel, String description) throws IOException {
+        return read(new Source() {
+            public long size() throws IOException { return channel.size(); }
+            public ByteBuffer slice(long position, int size) throws IOException { return readFully(channel, position, size); }
+        }, description);
+    }
+
+    /**
+     * Read the central directory of a ZIP archive held in memory (e.g. a mapped nested JAR).
+     */
+    static ZipDirectory read(final ByteBuffer zip, String description) throws IOException {
+        return read(new Source() {
+            public long size() { return zip.limit(); }
+            public ByteBuffer slice(long position, int size) { return view(zip, position, size); }
+        }, description);
+    }
+
+    /**
+     * Offset of an entry's data, just past its local file header.
+     */
+    static long dataOffset(FileChannel channel, Entry entry) throws IOException {
+        ByteBuffer header = readFully(channel, entry.localHeaderOffset, LOC_HEADER_SIZE);
+        return dataOffset(header, entry);
+    }
+
+    /**
+     * The raw (possibly compressed) data of an entry in an in-memory archive, without copying.
+     */
+    static ByteBuffer rawData(ByteBuffer zip, Entry entry) throws IOException {
+        ByteBuffer header = view(zip, entry.localHeaderOffset, LOC_HEADER_SIZE);
+        return view(zip, dataOffset(header, entry), (int) entry.compressedSize);
+    }
+
+    private static long dataOffset(ByteBuffer header, Entry entry) throws IOException {
+        if (header.getInt(0) != LOC_SIGNATURE) {
+            throw new IOException("Corrupt local header for " + entry.name);
+        }
+        int nameLength = header.getShort(26) & 0xFFFF;
+        int extraLength = header.getShort(28) & 0xFFFF;
+        return entry.localHeaderOffset + LOC_HEADER_SIZE + nameLength + extraLength;
+    }
+
+    private interface Source {
+        long size() throws IOException;
+
+        ByteBuffer slice(long position, int size) throws IOException;
+    }
+
+    private static ZipDirectory read(Source source, String description) throws IOException {
+        long fileSize = source.size();
+        if (fileSize < EOCD_MIN_SIZE) {
+            throw new IOException("Not a ZIP file: " + description);
+        }
+
+        // The EOCD record sits at the end, followed by a comment of up to 64 KB
+        int tailSize = (int) Math.min(fileSize, EOCD_MIN_SIZE + MAX_COMMENT_SIZE);
+        ByteBuffer tail = source.slice(fileSize - tailSize, tailSize);
+
+        int eocd = -1;
+        for (int i = tailSize - EOCD_MIN_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == EOCD_SIGNATURE) {
+                eocd = i;
+                break;
+            }
+        }
+        if (eocd < 0) {
+            throw new IOException("End of central directory not found: " + description);
+        }
+
+        int entryCount = tail.getShort(eocd + 10) & 0xFFFF;
+        long cenSize = tail.getInt(eocd + 12) & 0xFFFFFFFFL;
+        long cenOffset = tail.getInt(eocd + 16) & 0xFFFFFFFFL;
+        if (entryCount == 0xFFFF || cenSize == 0xFFFFFFFFL || cenOffset == 0xFFFFFFFFL) {
+            throw new IOException("ZIP64 archives are not supported: " + description);
+        }
+        if (cenOffset + cenSize > fileSize) {
+            throw new IOException("Corrupt central directory: " + description);
+        }
+
+        ByteBuffer cen = source.slice(cenOffset, (int) cenSize);
+        List<Entry> entries = new ArrayList<>(entryCount);
+        int pos = 0;
+        while (pos + CEN_HEADER_SIZE <= cenSize) {
+            if (cen.getInt(pos) != CEN_SIGNATURE) {
+                throw new IOException("Corrupt central directory entry at " + pos + ": " + description);
+            }
+            int method = cen.getShort(pos + 10) & 0xFFFF;
+            long compressedSize = cen.getInt(pos + 20) & 0xFFFFFFFFL;
+            long size = cen.getInt(pos + 24) & 0xFFFFFFFFL;
+            int nameLength = cen.getShort(pos + 28) & 0xFFFF;
+            int extraLength = cen.getShort(pos + 30) & 0xFFFF;
+            int commentLength = cen.getShort(pos + 32) & 0xFFFF;
+            long localHeaderOffset = cen.getInt(pos + 42) & 0xFFFFFFFFL;
+
+            byte[] nameBytes = new byte[nameLength];
+            for (int i = 0; i < nameLength; i++) {
+                nameBytes[i] = cen.get(pos + CEN_HEADER_SIZE + i);
+            }
+            String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+            entries.add(new Entry(name, method, compressedSize, size, localHeaderOffset));
+            pos += CEN_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+
+        return new ZipDirectory(Collections.unmodifiableList(entries));
+    }
+
+    private static ByteBuffer view(ByteBuffer buffer, long position, int size) {
+        ByteBuffer view = buffer.duplicate();
+        view.limit((int) position + size);
+        view.position((int) position);
+        return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) throw new IOException("Unexpected end of file");
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,138 @@
+package dev.nailed.bukkit.scala
+
+import org.bukkit.Bukkit
+import org.bukkit.command.CommandSender
+import java.util.{Arrays, Locale}
+
+/**
+ * Parser for one command argument, used by [[CommandTree]].
+ *
+ * `parse` returns [[ArgumentType.Invalid]] instead of an Option so a successful
+ * dispatch allocates nothing beyond the parsed value itself.
+ */
+trait ArgumentType[A]:
+
+  /** Placeholder shown in usage lines, e.g. `<amount>`. */
+  def describe(name: String): String = s"<$name>"
+
+  /** The parsed value, or [[ArgumentType.Invalid]]. */
+  def parse(input: String, sender: CommandSender): Any
+
+  /** Add completions starting with `prefix` (case-insensitive) to `out`. */
+  def suggest(prefix: String, sender: CommandSender, out: java.util.List[String]): Unit = ()
+
+  /** Whether this argument consumes the rest of the command line. */
+  def isGreedy: Boolean = false
+
+object ArgumentType:
+
+  /** Returned by [[ArgumentType.parse]] when the input does not match. */
+  object Invalid
+
+  /** A single word. */
+  val word: ArgumentType[String] = new ArgumentType[String]:
+    def parse(input: String, sender: CommandSender): Any = input
+
+  /** The rest of the command line, spaces included. Must be the last argument. */
+  val greedyString: ArgumentType[String] = new ArgumentType[String]:
+    override def describe(name: String): String = s"<$name...>"
+    def parse(input: String, sender: CommandSender): Any = input
+    override def isGreedy: Boolean = true
+
+  /** An integer in `[min, max]`. */
+  def int(min: Int = Int.MinValue, max: Int = Int.MaxValue): ArgumentType[Int] = new ArgumentType[Int]:
+    def parse(input: String, sender: CommandSender): Any =
+      try
+        val value = Integer.parseInt(input)
+        if value < min || value > max then Invalid else value
+      catch case _: NumberFormatException => Invalid
+
+  /** A finite double in `[min, max]`. */
+  def double(min: Double = Double.MinValue, max: Double = Double.MaxValue): ArgumentType[Double] = new ArgumentType[Double]:
+    def parse(input: String, sender: CommandSender): Any =
+      try
+        val value = java.lang.Double.parseDouble(input)
+        if value.isNaN || value.isInfinite || value < min || value > max then Invalid else value
+      catch case _: NumberFormatException => Invalid
+
+  /** `true` or `false`. */
+  val boolean: ArgumentType[Boolean] = choiceOf(Array("false", "true"), s => java.lang.Boolean.parseBoolean(s))
+
+  /** One of a fixed set of words (case-insensitive); the value is the canonical spelling. */
+  def choice(values: String*): ArgumentType[String] = choiceOf(values.toArray, s => s)
+
+  /** An online player, by exact name (case-insensitive). Completes from [[PlayerNameIndex]]. */
+  val player: ArgumentType[org.bukkit.entity.Player] = new ArgumentType[org.bukkit.entity.Player]:
+    def parse(input: String, sender: CommandSender): Any =
+      val found = Bukkit.getPlayerExact(input)
+      if found == null then Invalid else found
+    override def suggest(prefix: String, sender: CommandSender, out: java.util.List[String]): Unit =
+      PlayerNameIndex.suggest(prefix, out)
+
+  private def choiceOf[A](values: Array[String], convert: String => A): ArgumentType[A] =
+    val sorted = values.clone()
+    Arrays.sort(sorted, String.CASE_INSENSITIVE_ORDER)
+    new ArgumentType[A]:
+      def parse(input: String, sender: CommandSender): Any =
+        val i = Arrays.binarySearch(sorted, input, String.CASE_INSENSITIVE_ORDER)
+        if i < 0 then Invalid else convert(sorted(i))
+      override def suggest(prefix: String, sender: CommandSender, out: java.util.List[String]): Unit =
+        PrefixIndex.collect(sorted, prefix, out)
+
+/**
+ * Prefix lookups over arrays sorted with String.CASE_INSENSITIVE_ORDER.
+ */
+private[scala] object PrefixIndex:
+
+  /** Add every entry of `sorted` starting with `prefix` (ignoring case) to `out`. */
+  def collect(sorted: Array[String], prefix: String, out: java.util.List[String]): Unit =
+    var i = lowerBound(sorted, prefix)
+    while i < sorted.length && sorted(i).regionMatches(true, 0, prefix, 0, prefix.length) do
+      out.add(sorted(i))
+      i += 1
+
+  /** First index whose entry is not less than `key`. */
+  def lowerBound(sorted: Array[String], key: String): Int =
+    var low = 0
+    var high = sorted.length
+    while low < high do
+      val mid = (low + high) >>> 1
+      if String.CASE_INSENSITIVE_ORDER.compare(sorted(mid), key) < 0 then low = mid + 1
+      else high = mid
+    low
+
+/**
+ * Sorted snapshot of online player names for tab completion.
+ *
+ * Rebuilt at most once per second (or when the player count changes), so a burst
+ * of tab-complete packets shares one sorted array instead of walking and copying
+ * the online player list for each request.
+ */
+object PlayerNameIndex:
+
+  private final class Snapshot(val names: Array[String], val builtAt: Long)
+
+  private val MaxAgeNanos = 1000000000L
+
+  @volatile private var snapshot = new Snapshot(new Array[String](0), Long.MinValue)
+
+  /** Add online player names starting with `prefix` (ignoring case) to `out`. */
+  def suggest(prefix: String, out: java.util.List[String]): Unit =
+    PrefixIndex.collect(current(), prefix, out)
+
+  private def current(): Array[String] =
+    val now = System.nanoTime()
+    val cached = snapshot
+    val online = Bukkit.getOnlinePlayers
+    if now - cached.builtAt < MaxAgeNanos && cached.names.length == online.size then cached.names
+    else
+      val names = new Array[String](online.size)
+      var i = 0
+      val it = online.iterator()
+      while it.hasNext && i < names.length do
+        names(i) = it.next().getName
+        i += 1
+      val sorted = if i == names.length then names else Arrays.copyOf(names, i)
+      Arrays.sort(sorted, String.CASE_INSENSITIVE_ORDER)
+      snapshot = new Snapshot(sorted, now)
+      sorted
@@ -0,0 +1,92 @@
+package dev.nailed.bukkit.scala
+
+import java.util.concurrent.{ExecutorService, Executors, ForkJoinPool, ThreadFactory, TimeUnit}
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.logging.{Level, Logger}
+import scala.concurrent.ExecutionContextExecutor
+import scala.util.control.NonFatal
+
+/**
+ * ExecutionContext for work off the main thread.
+ *
+ * On Java 21+ every task runs on its own virtual thread, so blocking calls (database,
+ * HTTP, file I/O) do not tie up a platform thread. Older JVMs get a ForkJoinPool with
+ * a fixed parallelism instead - keep blocking work short there.
+ *
+ * Tasks run with the plugin's Scala ClassLoader as context ClassLoader. Virtual threads
+ * are looked up reflectively, so the SDK still runs on Java 8.
+ *
+ * Obtain it through [[BukkitPlugin.async]], which also shuts it down on disable.
+ */
+final class AsyncExecutionContext private (
+  executor: ExecutorService,
+  val isVirtual: Boolean,
+  classLoader: ClassLoader,
+  logger: Logger
+) extends ExecutionContextExecutor:
+
+  override def execute(runnable: Runnable): Unit =
+    executor.execute(() =>
+      val thread = Thread.currentThread
+      if thread.getContextClassLoader ne classLoader then thread.setContextClassLoader(classLoader)
+      try runnable.run()
+      catch case NonFatal(e) => reportFailure(e)
+    )
+
+  override def reportFailure(cause: Throwable): Unit =
+    logger.log(Level.SEVERE, "[Scala SDK] Async task failed", cause)
+
+  /**
+   * Stop accepting tasks and wait up to `timeoutMillis` for running ones; whatever is
+   * still running after that is interrupted.
+   */
+  def shutdown(timeoutMillis: Long): Unit =
+    executor.shutdown()
+    try
+      if !executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS) then
+        val dropped = executor.shutdownNow().size
+        logger.warning(s"[Scala SDK] Async tasks still running after ${timeoutMillis} ms were interrupted"
+          + (if dropped > 0 then s", $dropped queued task(s) dropped" else ""))
+    catch case _: InterruptedException =>
+      executor.shutdownNow()
+      Thread.currentThread.interrupt()
+
+object AsyncExecutionContext:
+
+  /**
+   * Create an async context.
+   *
+   * @param name        thread name prefix
+   * @param parallelism worker count of the ForkJoinPool fallback (ignored with virtual threads)
+   * @param classLoader context ClassLoader for tasks
+   */
+  def apply(name: String, parallelism: Int, classLoader: ClassLoader, logger: Logger): AsyncExecutionContext =
+    virtualThreadExecutor(name) match
+      case Some(executor) => new AsyncExecutionContext(executor, true, classLoader, logger)
+      case None => new AsyncExecutionContext(forkJoinPool(name, parallelism, classLoader), false, classLoader, logger)
+
+  /** Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name, 1).factory()), if available. */
+  private def virtualThreadExecutor(name: String): Option[ExecutorService] =
+    try
+      val builderClass = Class.forName("java.lang.Thread$Builder")
+      val builder = classOf[Thread].getMethod("ofVirtual").invoke(null)
+      val named = builderClass.getMethod("name", classOf[String], classOf[Long])
+        .invoke(builder, s"$name-", java.lang.Long.valueOf(1L))
+      val factory = builderClass.getMethod("factory").invoke(named).asInstanceOf[ThreadFactory]
+      val executor = classOf[Executors].getMethod("newThreadPerTaskExecutor", classOf[ThreadFactory])
+        .invoke(null, factory)
+      Some(executor.asInstanceOf[ExecutorService])
+    catch case NonFatal(_) | _: LinkageError =>
+      // Java < 21, or 19/20 without --enable-preview
+      None
+
+  private def forkJoinPool(name: String, parallelism: Int, classLoader: ClassLoader): ExecutorService =
+    val counter = new AtomicInteger()
+    val factory: ForkJoinPool.ForkJoinWorkerThreadFactory = pool =>
+      val thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool)
+      thread.setName(s"$name-${counter.incrementAndGet()}")
+      thread.setDaemon(true)
+      thread.setContextClassLoader(classLoader)
+      thread
+    // asyncMode: FIFO for submitted tasks, which suits event-style work
+    new ForkJoinPool(parallelism, factory, null, true)
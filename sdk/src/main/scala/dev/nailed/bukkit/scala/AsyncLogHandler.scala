@@ -0,0 +1,135 @@
+package dev.nailed.bukkit.scala
+
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.{AtomicLong, AtomicReferenceArray, LongAdder}
+import java.util.concurrent.locks.LockSupport
+import java.util.logging.{Handler, Level, LogRecord, Logger}
+
+/**
+ * Log handler that moves a plugin's console output off the threads that log.
+ *
+ * - Records go into a ring buffer allocated up front (many producers, one writer thread); a
+ *   producer claims a sequence with one CAS and stores the record - no queue nodes, no locks
+ * - The writer thread hands records to the parent logger (the server console), in order
+ * - When the ring is full, records below WARNING are dropped at once; WARNING and SEVERE wait up
+ *   to `maxBlockNanos` for space before they are dropped too. [[dropped]] counts both
+ * - [[close]] drains everything still buffered and puts the logger back the way it was
+ *
+ * Source class and method of a record are not inferred before it is handed over, so formats
+ * that print them show the writer thread's caller instead.
+ *
+ * Obtain it through [[BukkitPlugin.asyncLogging]], which also closes it after onDisable().
+ */
+final class AsyncLogHandler private[scala] (logger: Logger, capacity: Int, maxBlockNanos: Long) extends Handler:
+  import AsyncLogHandler.*
+
+  private val slots = new AtomicReferenceArray[LogRecord](capacity)
+  private val mask = capacity - 1
+  private val tail = new AtomicLong() // next sequence to claim
+  @volatile private var head = 0L // next sequence to write, advanced by the writer only
+  @volatile private var sleeping = false
+  @volatile private var closed = false
+  private val _dropped = new LongAdder()
+  private val parent = logger.getParent
+  private val useParentHandlers = logger.getUseParentHandlers
+
+  private val writer = new Thread((() => writeLoop()): Runnable, s"Scala SDK log writer (${logger.getName})")
+  writer.setDaemon(true)
+  writer.start()
+  logger.addHandler(this)
+  logger.setUseParentHandlers(false)
+
+  /** Records dropped because the ring was full. */
+  def dropped: Long = _dropped.sum
+
+  /** Records buffered but not yet written. */
+  def pending: Int = (tail.get - head).toInt
+
+  override def publish(record: LogRecord): Unit =
+    if record != null && isLoggable(record) then
+      if closed then deliver(record)
+      else if !offer(record) then _dropped.increment()
+
+  /** Wait (up to a second) until everything published so far is written. */
+  override def flush(): Unit =
+    val target = tail.get
+    val deadline = System.nanoTime() + FlushTimeoutNanos
+    while head < target && writer.isAlive && System.nanoTime() - deadline < 0 do
+      LockSupport.unpark(writer)
+      LockSupport.parkNanos(IdleParkNanos)
+
+  /** Stop the writer, write what is left on the calling thread and detach from the logger. */
+  override def close(): Unit =
+    if !closed then
+      closed = true
+      LockSupport.unpark(writer)
+      try writer.join(TimeUnit.NANOSECONDS.toMillis(FlushTimeoutNanos))
+      catch case _: InterruptedException => Thread.currentThread.interrupt()
+      // A writer stuck in a slow console keeps the ring; two consumers would corrupt it
+      if !writer.isAlive then drain()
+      logger.removeHandler(this)
+      logger.setUseParentHandlers(useParentHandlers)
+      val lost = dropped
+      if lost > 0 then logger.warning(s"[Scala SDK] $lost log record(s) were dropped because the log buffer was full")
+
+  private def offer(record: LogRecord): Boolean =
+    var deadline = 0L
+    while true do
+      val sequence = tail.get
+      if sequence - head < capacity then
+        if tail.compareAndSet(sequence, sequence + 1) then
+          slots.lazySet((sequence & mask).toInt, record)
+          if sleeping then LockSupport.unpark(writer)
+          return true
+      else
+        // Full: only warnings and errors are worth holding up the caller for
+        if record.getLevel.intValue < Level.WARNING.intValue || maxBlockNanos <= 0 then return false
+        val now = System.nanoTime()
+        if deadline == 0L then deadline = now + maxBlockNanos
+        else if now - deadline > 0 then return false
+        LockSupport.unpark(writer)
+        LockSupport.parkNanos(BackoffNanos)
+    false
+
+  private def writeLoop(): Unit =
+    while !closed do
+      if !writeNext() then
+        sleeping = true
+        // Re-check after announcing: a producer may have published before seeing the flag
+        if head == tail.get && !closed then LockSupport.parkNanos(SleepNanos)
+        sleeping = false
+
+  /** Write the record at head. False if there is none yet. */
+  private def writeNext(): Boolean =
+    val sequence = head
+    if sequence == tail.get then false
+    else
+      val index = (sequence & mask).toInt
+      val record = slots.get(index)
+      // Claimed but not stored yet: the producer is between its CAS and its store
+      if record == null then
+        Thread.`yield`()
+        true
+      else
+        slots.set(index, null)
+        head = sequence + 1
+        deliver(record)
+        true
+
+  private def drain(): Unit =
+    // Producers that claimed a slot before close() store their record momentarily
+    val deadline = System.nanoTime() + FlushTimeoutNanos
+    while head != tail.get && System.nanoTime() - deadline < 0 do writeNext()
+
+  private def deliver(record: LogRecord): Unit =
+    try
+      if parent != null then parent.log(record)
+    catch case e: RuntimeException => reportError(null, e, java.util.logging.ErrorManager.WRITE_FAILURE)
+
+object AsyncLogHandler:
+
+  private val IdleParkNanos = TimeUnit.MILLISECONDS.toNanos(1)
+  // Producers unpark the writer; the timeout only bounds a missed wake-up
+  private val SleepNanos = TimeUnit.MILLISECONDS.toNanos(100)
+  private val BackoffNanos = TimeUnit.MICROSECONDS.toNanos(50)
+  private val FlushTimeoutNanos = TimeUnit.SECONDS.toNanos(1)
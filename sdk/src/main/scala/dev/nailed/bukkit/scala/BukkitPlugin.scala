@@ -1,12 +1,17 @@
 package dev.nailed.bukkit.scala
 
-import org.bukkit.Server
+import org.bukkit.{ChunkSnapshot, Server, World}
 import org.bukkit.command.{CommandSender, PluginCommand}
 import org.bukkit.configuration.file.FileConfiguration
-import org.bukkit.plugin.{Plugin, PluginManager}
+import org.bukkit.event.{EventPriority, Listener}
+import org.bukkit.event.player.PlayerQuitEvent
+import org.bukkit.plugin.{EventExecutor, Plugin, PluginManager}
 import org.bukkit.plugin.java.JavaPlugin
 import java.io.File
-import java.util.logging.Logger
+import java.util.concurrent.{ConcurrentHashMap, ConcurrentLinkedDeque, CopyOnWriteArrayList, ForkJoinPool, TimeUnit}
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.logging.{Level, Logger}
+import scala.util.control.NonFatal
 
 /**
  * Trait for Scala Bukkit plugins.
@@ -15,12 +20,35 @@ import java.util.logging.Logger
  * The `_plugin` field is injected by the SDK bootstrap via setPlugin() method.
  * 
  * Supports Bukkit/Spigot/Paper 1.8-1.21+ with Scala 3.
+ * 
+ * Implements [[ScalaPluginLifecycle]] so the bootstrap dispatches lifecycle
+ * calls through a direct interface call rather than reflection.
+ * 
+ * Built-in ExecutionContexts:
+ * - [[mainThread]] runs Future callbacks on the server thread, drained once per tick
+ * - [[async]] runs work off the main thread (virtual threads on Java 21+)
+ * Both are created on first use and shut down automatically after onDisable(),
+ * as is the ForkJoinPool behind [[scanRegion]]; unfinished scans and edits are cancelled.
  */
-trait BukkitPlugin:
+trait BukkitPlugin extends ScalaPluginLifecycle:
   
   // Internal field - injected by SDK bootstrap
   @volatile private var _plugin: JavaPlugin = _
   
+  // Created on first use, shut down by runShutdownHooks()
+  @volatile private var _mainThread: MainThreadExecutionContext = _
+  @volatile private var _async: AsyncExecutionContext = _
+  @volatile private var _scanPool: ForkJoinPool = _
+  @volatile private var _asyncLog: AsyncLogHandler = _
+  private var _closed = false // guarded by this
+  private val _shutdownHooks = new ConcurrentLinkedDeque[() => Unit]()
+  
+  // Player stores evicted on quit; the quit listener is registered with the first one
+  private val _playerStores = new CopyOnWriteArrayList[PlayerStore.Evictable]()
+  private var _quitListener: Listener = _ // guarded by this
+  private val _scans = ConcurrentHashMap.newKeySet[ChunkScan[?]]()
+  private val _edits = ConcurrentHashMap.newKeySet[BlockEditTask]()
+  
   /**
    * Called by SDK bootstrap to inject the JavaPlugin instance.
    * This method is public to ensure reflection can find it across all Java versions.
@@ -50,17 +78,388 @@ trait BukkitPlugin:
   final def reloadConfig(): Unit = plugin.reloadConfig()
   final def getCommand(name: String): PluginCommand = plugin.getCommand(name)
   
-  // Logging shortcuts
-  final def info(msg: String): Unit = logger.info(msg)
-  final def warn(msg: String): Unit = logger.warning(msg)
-  final def severe(msg: String): Unit = logger.severe(msg)
+  /**
+   * Compile a command definition (see [[Commands]]) and install it as executor and
+   * tab completer of the plugin.yml command with the same name.
+   */
+  final def registerCommand(definition: CommandBuilder): CommandTree =
+    val command = getCommand(definition.name)
+    if command == null then
+      throw new IllegalArgumentException(s"[Scala SDK] Command '${definition.name}' is not declared in plugin.yml")
+    val tree = CommandTree.compile(definition, plugin.getName)
+    command.setExecutor(tree)
+    command.setTabCompleter(tree)
+    tree
+  
+  // Logging shortcuts. Inlined with the message unevaluated: an interpolation such as
+  // info(s"${p.getName} joined") is only built when the level is enabled.
+  inline def info(inline msg: String): Unit = log(Level.INFO, msg)
+  inline def warn(inline msg: String): Unit = log(Level.WARNING, msg)
+  inline def severe(inline msg: String): Unit = log(Level.SEVERE, msg)
+  inline def fine(inline msg: String): Unit = log(Level.FINE, msg)
+  inline def warn(inline msg: String, cause: Throwable): Unit = log(Level.WARNING, msg, cause)
+  inline def severe(inline msg: String, cause: Throwable): Unit = log(Level.SEVERE, msg, cause)
+  
+  inline def log(level: Level, inline msg: String): Unit =
+    val target = logger
+    if target.isLoggable(level) then target.log(level, msg)
+  
+  inline def log(level: Level, inline msg: String, cause: Throwable): Unit =
+    val target = logger
+    if target.isLoggable(level) then target.log(level, msg, cause)
+  
+  /**
+   * Write this plugin's log output on a background thread instead of the calling one (usually
+   * the main thread). See [[AsyncLogHandler]]; it is flushed and removed after onDisable().
+   *
+   * @param capacity       records buffered before the ring is full (rounded up to a power of two)
+   * @param maxBlockMillis how long WARNING and SEVERE records wait for space in a full ring
+   *                       before they are dropped; lower levels are dropped at once
+   */
+  final def asyncLogging(capacity: Int = 4096, maxBlockMillis: Long = 50L): AsyncLogHandler =
+    val existing = _asyncLog
+    if existing != null then existing
+    else synchronized {
+      if _asyncLog == null then
+        if _closed then throw new IllegalStateException("[Scala SDK] Plugin is disabled")
+        val size = Integer.highestOneBit(math.max(16, math.min(capacity, 1 << 20)) - 1) << 1
+        _asyncLog = new AsyncLogHandler(logger, size, TimeUnit.MILLISECONDS.toNanos(maxBlockMillis))
+      _asyncLog
+    }
   
   // Register this as listener if it implements Listener
   final def registerEvents(): Unit =
     this match
       case listener: org.bukkit.event.Listener => 
-        pluginManager.registerEvents(listener, plugin)
+        registerEvents(listener)
       case _ => ()
   
+  /**
+   * Register a listener's @EventHandler methods, each with a generated executor that calls
+   * the handler directly instead of through Method.invoke. Falls back to
+   * PluginManager.registerEvents for listeners whose handlers cannot be generated
+   * (e.g. private methods).
+   */
+  final def registerEvents(listener: org.bukkit.event.Listener): Unit =
+    EventExecutors.registerEvents(listener, plugin)
+  
+  /**
+   * Subscribe to `E` through a stream of pushed-down filters and batching stages. See
+   * [[EventStream]].
+   *
+   * {{{
+   * events[PlayerMoveEvent]().filter(EventFilter.blockChanged).foreach(e => ...)
+   * }}}
+   */
+  final def events[E <: org.bukkit.event.Event](
+    priority: EventPriority = EventPriority.NORMAL,
+    ignoreCancelled: Boolean = false
+  )(using tag: scala.reflect.ClassTag[E]): EventStream[E] =
+    new EventStream[E](this, tag.runtimeClass.asInstanceOf[Class[E]], priority, ignoreCancelled, Vector.empty)
+  
   // Check if plugin is initialized
   final def isInitialized: Boolean = _plugin != null
+  
+  // ==================== Typed configuration ====================
+  
+  /**
+   * Typed, snapshot-based view of `config.yml` that reloads itself when the file changes.
+   * See [[TypedConfig]] and [[ConfigKey]].
+   *
+   * {{{
+   * val MaxHomes = ConfigKey.int("homes.max", 3)
+   * lazy val settings = typedConfig(MaxHomes)
+   * ...
+   * if homes.size >= settings(MaxHomes) then ...
+   * }}}
+   *
+   * Parsing runs on [[async]]; change listeners run on [[mainThread]]. Closed on disable.
+   */
+  final def typedConfig(keys: ConfigKey[?]*): TypedConfig =
+    typedConfig("config.yml", true, keys*)
+  
+  /**
+   * Typed view of `fileName` in the data folder (defaults from the same file in the JAR).
+   *
+   * @param watch reload when the file changes on disk
+   */
+  final def typedConfig(fileName: String, watch: Boolean, keys: ConfigKey[?]*): TypedConfig =
+    val config = new TypedConfig(
+      new File(dataFolder, fileName), () => getResourceBytes(fileName), keys, async, mainThread, logger)
+    onShutdown(config.close())
+    config.reload()
+    if watch then config.watch()
+    config
+  
+  // ==================== Resources ====================
+  
+  /**
+   * Contents of a resource in the plugin JAR (or visible to its ClassLoader) as a read-only
+   * ByteBuffer, or null if there is none.
+   *
+   * Served from a memory mapping of the JAR: stored entries are zero-copy views, deflated
+   * ones are inflated once and cached while small (`scala-resource-cache` in plugin.yml, KB).
+   * Prefer this over getResourceAsStream for files read repeatedly, e.g. on player join.
+   */
+  final def getResourceBytes(name: String): java.nio.ByteBuffer =
+    getClass.getClassLoader match
+      case source: ScalaResourceSource => source.getResourceBytes(name)
+      case loader =>
+        val in = loader.getResourceAsStream(name)
+        if in == null then null
+        else
+          try
+            val out = new java.io.ByteArrayOutputStream()
+            val buffer = new Array[Byte](8192)
+            var n = in.read(buffer)
+            while n != -1 do
+              out.write(buffer, 0, n)
+              n = in.read(buffer)
+            java.nio.ByteBuffer.wrap(out.toByteArray).asReadOnlyBuffer()
+          finally in.close()
+  
+  // ==================== Player state ====================
+  
+  /**
+   * Per-player values keyed by UUID, evicted one tick after the player quits.
+   * See [[PlayerStore]].
+   *
+   * {{{
+   * lazy val players = playerStore[PlayerData]()
+   * players.getOrElseUpdate(player.getUniqueId)(PlayerData(player.getName, "member", 0))
+   * }}}
+   */
+  final def playerStore[V <: AnyRef](): PlayerStore[V] =
+    trackPlayers(new PlayerStore[V](PlayerStore.defaultStripes, null))
+  
+  /**
+   * Per-player values written behind to `<data folder>/<name>/<uuid>.dat` with `codec`:
+   * dirty values every `flushSeconds` on [[async]], evicted values on quit, the rest on disable.
+   * Read values back with [[PlayerStore.load]].
+   */
+  final def playerStore[V <: AnyRef](name: String, codec: PlayerStore.Codec[V], flushSeconds: Int = 30): PlayerStore[V] =
+    val writeBehind = new PlayerStore.WriteBehind[V](new File(dataFolder, name), codec, async, logger)
+    val store = trackPlayers(new PlayerStore[V](PlayerStore.defaultStripes, writeBehind))
+    val period = math.max(1, flushSeconds) * 20L
+    // Runs on the main thread only to hand the flush to async
+    val flushTask = server.getScheduler.runTaskTimer(plugin, (() => { store.flush(); () }): Runnable, period, period)
+    onShutdown(flushTask.cancel())
+    store
+  
+  /**
+   * Fixed-layout records of `recordSize` bytes per player, stored off-heap and dropped
+   * one tick after the player quits. See [[PlayerRecords]].
+   */
+  final def playerRecords(recordSize: Int): PlayerRecords =
+    if recordSize <= 0 then throw new IllegalArgumentException(s"[Scala SDK] Invalid record size $recordSize")
+    trackPlayers(new PlayerRecords(recordSize, PlayerStore.defaultStripes))
+  
+  private def trackPlayers[S <: PlayerStore.Evictable](store: S): S =
+    synchronized {
+      if _quitListener == null then
+        val listener = new Listener {}
+        val executor: EventExecutor = (_, event) =>
+          event match
+            case quit: PlayerQuitEvent => evictLater(quit.getPlayer.getUniqueId)
+            case _ => ()
+        pluginManager.registerEvent(classOf[PlayerQuitEvent], listener, EventPriority.MONITOR, executor, plugin, false)
+        _quitListener = listener
+    }
+    _playerStores.add(store)
+    onShutdown {
+      _playerStores.remove(store)
+      store.close()
+    }
+    store
+  
+  // A tick later, so quit handlers that run after ours still find the player's state
+  private def evictLater(id: java.util.UUID): Unit =
+    mainThread.execute { () =>
+      // Rejoined within the tick: keep the state
+      if server.getPlayer(id) == null then
+        val it = _playerStores.iterator()
+        while it.hasNext do it.next().evict(id)
+    }
+  
+  // ==================== World scanning ====================
+  
+  /** Main-thread time per tick spent capturing chunk snapshots, in milliseconds. Override to change. */
+  def scanBudgetMillis: Long = 2L
+  
+  /** Worker count of the chunk scan pool. Override to change. */
+  def scanParallelism: Int = math.max(1, Runtime.getRuntime.availableProcessors - 1)
+  
+  /**
+   * Fold every chunk in `[fromChunkX, toChunkX] x [fromChunkZ, toChunkZ]` of `world` in
+   * parallel off the main thread. See [[ChunkScan]].
+   *
+   * {{{
+   * scanRegion(world, -16, -16, 16, 16)(Map.empty[Material, Int])((counts, chunk) => ...)(_ ++ _)
+   *   .result.foreach(counts => sender.sendMessage(counts.toString))(using mainThread)
+   * }}}
+   *
+   * `zero` is the accumulator of each batch, `step` folds one snapshot into it (on a pool
+   * thread - no Bukkit API calls), and `merge` combines the accumulators of two batches.
+   *
+   * @param loadChunks load (and then release) unloaded chunks instead of skipping them; much
+   *                   slower, and generates chunks that do not exist yet
+   * @param batchSize  snapshots folded per pool task
+   */
+  final def scanRegion[A](
+    world: World, fromChunkX: Int, fromChunkZ: Int, toChunkX: Int, toChunkZ: Int,
+    loadChunks: Boolean = false, batchSize: Int = 8
+  )(zero: => A)(step: (A, ChunkSnapshot) => A)(merge: (A, A) => A): ChunkScan[A] =
+    val width = math.abs(toChunkX.toLong - fromChunkX) + 1
+    val depth = math.abs(toChunkZ.toLong - fromChunkZ) + 1
+    if width * depth > Int.MaxValue - 8 then throw new IllegalArgumentException("[Scala SDK] Scan region too large")
+    val chunks = new Array[Long]((width * depth).toInt)
+    var i = 0
+    var x = math.min(fromChunkX, toChunkX)
+    while x <= math.max(fromChunkX, toChunkX) do
+      var z = math.min(fromChunkZ, toChunkZ)
+      while z <= math.max(fromChunkZ, toChunkZ) do
+        chunks(i) = ChunkScan.pack(x, z)
+        i += 1
+        z += 1
+      x += 1
+    startScan(world, chunks, loadChunks, batchSize, () => zero, step, merge)
+  
+  /** Fold every chunk of `world` loaded right now. Must be called on the main thread. */
+  final def scanLoadedChunks[A](world: World, batchSize: Int = 8)(zero: => A)(step: (A, ChunkSnapshot) => A)(
+    merge: (A, A) => A
+  ): ChunkScan[A] =
+    val loaded = world.getLoadedChunks
+    val chunks = new Array[Long](loaded.length)
+    var i = 0
+    while i < loaded.length do
+      chunks(i) = ChunkScan.pack(loaded(i).getX, loaded(i).getZ)
+      i += 1
+    startScan(world, chunks, false, batchSize, () => zero, step, merge)
+  
+  private def startScan[A](
+    world: World, chunks: Array[Long], loadChunks: Boolean, batchSize: Int,
+    zero: () => A, step: (A, ChunkSnapshot) => A, merge: (A, A) => A
+  ): ChunkScan[A] =
+    val pool = scanPool
+    val scan = new ChunkScan[A](plugin, world, chunks, loadChunks, TimeUnit.MILLISECONDS.toNanos(scanBudgetMillis),
+      math.max(1, batchSize), pool.getParallelism * 2, pool, zero, step, merge, mainThread)
+    _scans.add(scan)
+    scan.result.onComplete(_ => _scans.remove(scan))(using scala.concurrent.ExecutionContext.parasitic)
+    scan.start()
+    scan
+  
+  private def scanPool: ForkJoinPool =
+    val existing = _scanPool
+    if existing != null then existing
+    else synchronized {
+      if _scanPool == null then
+        if _closed then throw new IllegalStateException("[Scala SDK] Plugin is disabled")
+        val classLoader = getClass.getClassLoader
+        val counter = new AtomicInteger()
+        val factory: ForkJoinPool.ForkJoinWorkerThreadFactory = pool =>
+          val thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool)
+          thread.setName(s"${plugin.getName}-scan-${counter.incrementAndGet()}")
+          thread.setDaemon(true)
+          thread.setContextClassLoader(classLoader)
+          thread
+        _scanPool = new ForkJoinPool(scanParallelism, factory, null, false)
+      _scanPool
+    }
+  
+  // ==================== Bulk block edits ====================
+  
+  /** Main-thread time per tick spent applying block edits, in milliseconds. Override to change. */
+  def blockEditBudgetMillis: Long = 10L
+  
+  /**
+   * Apply `edits` to `world` a slice per tick instead of in one go. See [[BlockEdits]] and
+   * [[BlockEditTask]]. The edits are taken over - `edits` is empty afterwards and can be reused.
+   *
+   * {{{
+   * val edits = BlockEdits()
+   * edits.fill(arena.minX, arena.minY, arena.minZ, arena.maxX, arena.maxY, arena.maxZ, Material.AIR)
+   * val task = applyEdits(world, edits)
+   * task.onProgress(p => bossBar.setProgress(p))
+   * task.result.foreach(_ => broadcast("Arena reset"))(using mainThread)
+   * }}}
+   *
+   * @param applyPhysics run block physics for every changed block (off: no neighbour updates)
+   */
+  final def applyEdits(world: World, edits: BlockEdits, applyPhysics: Boolean = false): BlockEditTask =
+    val task = new BlockEditTask(plugin, world, applyPhysics, TimeUnit.MILLISECONDS.toNanos(blockEditBudgetMillis), mainThread)
+    _edits.add(task)
+    task.result.onComplete(_ => _edits.remove(task))(using scala.concurrent.ExecutionContext.parasitic)
+    task.start(edits, async)
+    task
+  
+  // ==================== Execution contexts ====================
+  
+  /** Per-tick time budget of [[mainThread]] in milliseconds. Override to change. */
+  def mainThreadBudgetMillis: Long = 5L
+  
+  /** Worker count of [[async]] on JVMs without virtual threads. Override to change. */
+  def asyncParallelism: Int = math.max(2, math.min(Runtime.getRuntime.availableProcessors, 8))
+  
+  /** How long disabling waits for running [[async]] tasks. Override to change. */
+  def asyncShutdownTimeoutMillis: Long = 5000L
+  
+  /**
+   * ExecutionContext on the server main thread: `future.foreach(r => ...)(using mainThread)`.
+   * All tasks share one scheduler task per tick instead of one runTask() each.
+   */
+  final def mainThread: MainThreadExecutionContext =
+    val existing = _mainThread
+    if existing != null then existing
+    else synchronized {
+      if _mainThread == null then
+        if _closed then throw new IllegalStateException("[Scala SDK] Plugin is disabled")
+        _mainThread = new MainThreadExecutionContext(plugin, TimeUnit.MILLISECONDS.toNanos(mainThreadBudgetMillis))
+      _mainThread
+    }
+  
+  /**
+   * ExecutionContext off the main thread: `given ExecutionContext = async`.
+   */
+  final def async: AsyncExecutionContext =
+    val existing = _async
+    if existing != null then existing
+    else synchronized {
+      if _async == null then
+        if _closed then throw new IllegalStateException("[Scala SDK] Plugin is disabled")
+        _async = AsyncExecutionContext(s"${plugin.getName}-async", asyncParallelism, getClass.getClassLoader, logger)
+      _async
+    }
+  
+  /**
+   * Run `hook` after onDisable(). Hooks run in reverse order of registration,
+   * before the built-in execution contexts shut down.
+   */
+  final def onShutdown(hook: => Unit): Unit =
+    _shutdownHooks.push(() => hook)
+  
+  /**
+   * Called by the SDK bootstrap after onDisable(). Runs the shutdown hooks, then stops
+   * [[async]] (waiting for running tasks) and [[mainThread]], which runs the callbacks
+   * those tasks queued, and finally flushes [[asyncLogging]].
+   */
+  final override def runShutdownHooks(): Unit =
+    var hook = _shutdownHooks.poll()
+    while hook != null do
+      try hook()
+      catch case NonFatal(e) => logger.log(Level.SEVERE, "[Scala SDK] Shutdown hook failed", e)
+      hook = _shutdownHooks.poll()
+    
+    // Not under the lock: async tasks may still reach for mainThread while we wait
+    val (asyncContext, mainContext, scanPool, asyncLog) = synchronized {
+      _closed = true
+      (_async, _mainThread, _scanPool, _asyncLog)
+    }
+    val scans = _scans.iterator()
+    while scans.hasNext do scans.next().cancel()
+    val edits = _edits.iterator()
+    while edits.hasNext do edits.next().cancel()
+    if scanPool != null then scanPool.shutdownNow()
+    if asyncContext != null then asyncContext.shutdown(asyncShutdownTimeoutMillis)
+    if mainContext != null then mainContext.shutdown()
+    // Last, so whatever the steps above logged is written too
+    if asyncLog != null then asyncLog.close()
@@ -0,0 +1,198 @@
+package dev.nailed.bukkit.scala
+
+import org.bukkit.{ChunkSnapshot, Material, World}
+import org.bukkit.plugin.Plugin
+import org.bukkit.scheduler.BukkitTask
+import java.util.concurrent.{CancellationException, ConcurrentLinkedQueue, ForkJoinPool}
+import java.util.concurrent.atomic.{AtomicBoolean, AtomicInteger}
+import scala.concurrent.{ExecutionContext, Future, Promise}
+import scala.util.control.NonFatal
+
+/**
+ * A running scan of chunks: snapshots are captured on the main thread and folded in
+ * parallel on a ForkJoinPool.
+ *
+ * - A repeating main-thread task captures ChunkSnapshots in batches until the per-tick
+ *   budget is used up (at least one batch per tick, so the scan always makes progress)
+ * - Each batch is folded on the pool into its own accumulator - `step` never sees shared
+ *   state, so it needs no synchronization - and the partial results are merged at the end
+ * - Capturing pauses while too many batches wait for the pool, which bounds the number of
+ *   snapshots alive at once
+ * - [[result]] completes on the main thread
+ *
+ * Obtain it through [[BukkitPlugin.scanRegion]] or [[BukkitPlugin.scanLoadedChunks]].
+ */
+final class ChunkScan[A] private[scala] (
+  plugin: Plugin,
+  world: World,
+  chunks: Array[Long], // ChunkScan.pack(x, z)
+  loadChunks: Boolean,
+  budgetNanos: Long,
+  batchSize: Int,
+  maxInFlight: Int,
+  pool: ForkJoinPool,
+  zero: () => A,
+  step: (A, ChunkSnapshot) => A,
+  merge: (A, A) => A,
+  resultContext: ExecutionContext
+):
+  private val promise = Promise[A]()
+  private val partials = new ConcurrentLinkedQueue[A]()
+  private val inFlight = new AtomicInteger()
+  private val finished = new AtomicBoolean()
+  private val _processed = new AtomicInteger()
+  private var next = 0 // main thread only
+  @volatile private var _captured = 0
+  @volatile private var capturedAll = false
+  @volatile private var task: BukkitTask = null
+  private val probe = ScalaProfiler.probe(plugin.getName, "task chunk scan capture")
+
+  /** The merged result of every scanned chunk. Completes on the main thread. */
+  def result: Future[A] = promise.future
+
+  /** Number of chunks in the scan. */
+  def total: Int = chunks.length
+
+  /** Number of snapshots captured so far (unloaded chunks are skipped unless loading). */
+  def captured: Int = _captured
+
+  /** Number of snapshots folded so far. */
+  def processed: Int = _processed.get
+
+  /** Stop capturing; [[result]] fails with a CancellationException. */
+  def cancel(): Unit = fail(new CancellationException("[Scala SDK] Chunk scan cancelled"))
+
+  private[scala] def start(): Unit =
+    task = plugin.getServer.getScheduler.runTaskTimer(plugin, (() => captureTick()): Runnable, 0L, 1L)
+
+  private def captureTick(): Unit =
+    if promise.isCompleted then stopCapturing()
+    else
+      val start = ScalaProfiler.start(probe)
+      try
+        val deadline = System.nanoTime() + budgetNanos
+        var more = true
+        while more && next < chunks.length && inFlight.get < maxInFlight do
+          val batch = captureBatch()
+          if batch.length > 0 then
+            inFlight.incrementAndGet()
+            pool.execute(() => fold(batch))
+          more = System.nanoTime() - deadline < 0
+        if next >= chunks.length then
+          stopCapturing()
+          capturedAll = true
+          if inFlight.get == 0 then complete()
+      catch case NonFatal(e) => fail(e)
+      finally ScalaProfiler.stop(probe, start)
+
+  private def captureBatch(): Array[ChunkSnapshot] =
+    val batch = new Array[ChunkSnapshot](math.min(batchSize, chunks.length - next))
+    var n = 0
+    while n < batch.length && next < chunks.length do
+      val x = ChunkScan.chunkX(chunks(next))
+      val z = ChunkScan.chunkZ(chunks(next))
+      next += 1
+      val loaded = world.isChunkLoaded(x, z)
+      if loaded || loadChunks then
+        // No height map, biomes or temperatures: block data is all a scan reads
+        batch(n) = world.getChunkAt(x, z).getChunkSnapshot(false, false, false)
+        n += 1
+        if !loaded then world.unloadChunkRequest(x, z)
+    _captured += n
+    if n == batch.length then batch else java.util.Arrays.copyOf(batch, n)
+
+  private def fold(batch: Array[ChunkSnapshot]): Unit =
+    if !promise.isCompleted then
+      try
+        var accumulator = zero()
+        var i = 0
+        while i < batch.length do
+          accumulator = step(accumulator, batch(i))
+          batch(i) = null // let the snapshot go as soon as it is folded
+          i += 1
+        partials.add(accumulator)
+        _processed.addAndGet(batch.length)
+      catch case NonFatal(e) => fail(e)
+    if inFlight.decrementAndGet() == 0 && capturedAll then complete()
+
+  private def complete(): Unit =
+    if finished.compareAndSet(false, true) && !promise.isCompleted then
+      try
+        var merged = zero()
+        var partial = partials.poll()
+        while partial != null do
+          merged = merge(merged, partial)
+          partial = partials.poll()
+        val value = merged
+        resultContext.execute(() => promise.trySuccess(value))
+      catch case NonFatal(e) => promise.tryFailure(e)
+
+  private def fail(cause: Throwable): Unit =
+    if promise.tryFailure(cause) then
+      stopCapturing()
+      partials.clear()
+
+  private def stopCapturing(): Unit =
+    val running = task
+    if running != null then running.cancel()
+
+object ChunkScan:
+
+  /** Chunk coordinates packed into one long: x in the high half, z in the low half. */
+  inline def pack(chunkX: Int, chunkZ: Int): Long = (chunkX.toLong << 32) | (chunkZ & 0xFFFFFFFFL)
+  inline def chunkX(packed: Long): Int = (packed >> 32).toInt
+  inline def chunkZ(packed: Long): Int = packed.toInt
+
+  /**
+   * Call `f(x, y, z, material)` for every block of the snapshot in `[fromY, toY)` that is not
+   * air, with x and z relative to the chunk. The range is clamped to the world's height. Sections the snapshot reports as empty are
+   * skipped without reading a block. Both `f` and the loop are inlined, so scanning a chunk
+   * allocates nothing. Needs 1.14+ (ChunkSnapshot.getBlockType, Material.isAir).
+   *
+   * @param worldMinY [[minHeight]] of the world, where section 0 starts
+   * @param worldMaxY World.getMaxHeight, just above the top section
+   *
+   * {{{
+   * val (bottom, top) = (ChunkScan.minHeight(world), world.getMaxHeight)
+   * scanRegion(world, -32, -32, 32, 32)(0L)((count, chunk) =>
+   *   var found = count
+   *   ChunkScan.forEachBlock(chunk, bottom, top, bottom, 64) { (_, _, _, material) =>
+   *     if material == Material.DIAMOND_ORE then found += 1
+   *   }
+   *   found
+   * )(_ + _)
+   * }}}
+   */
+  inline def forEachBlock(snapshot: ChunkSnapshot, worldMinY: Int, worldMaxY: Int, fromY: Int, toY: Int)(
+    inline f: (Int, Int, Int, Material) => Unit
+  ): Unit =
+    // Sections above the world do not exist - isSectionEmpty would throw
+    val top = math.min(toY, worldMaxY)
+    var sectionY = math.max(fromY, worldMinY) & ~15
+    while sectionY < top do
+      // Section index counts from the bottom of the world, which is below 0 on 1.18+
+      if !snapshot.isSectionEmpty((sectionY - worldMinY) >> 4) then
+        val from = math.max(sectionY, fromY)
+        val to = math.min(sectionY + 16, top)
+        var y = from
+        while y < to do
+          var z = 0
+          while z < 16 do
+            var x = 0
+            while x < 16 do
+              val material = snapshot.getBlockType(x, y, z)
+              if !material.isAir then f(x, y, z, material)
+              x += 1
+            z += 1
+          y += 1
+      sectionY += 16
+
+  /** Lowest block height of `world`: World.getMinHeight on 1.17+, 0 before. */
+  def minHeight(world: World): Int =
+    if MinHeight == null then 0
+    else MinHeight.invoke(world).asInstanceOf[Integer].intValue
+
+  // World#getMinHeight, added in 1.17 - the SDK compiles against an older API
+  private val MinHeight: java.lang.reflect.Method =
+    try classOf[World].getMethod("getMinHeight")
+    catch case _: NoSuchMethodException => null
@@ -0,0 +1,242 @@
+package dev.nailed.bukkit.scala
+
+import org.bukkit.command.{Command, CommandExecutor, CommandSender, TabCompleter}
+import java.util.{Arrays, Collections}
+
+/**
+ * Declarative command definitions, compiled to a [[CommandTree]].
+ *
+ * {{{
+ * import dev.nailed.bukkit.scala.Commands.*
+ *
+ * registerCommand(
+ *   command("shop",
+ *     literal("buy",
+ *       argument("item", ArgumentType.choice("apple", "bread"),
+ *         argument("amount", ArgumentType.int(1, 64)).executes { ctx =>
+ *           ctx.reply(s"Bought ${ctx[Int]("amount")} ${ctx[String]("item")}")
+ *         }
+ *       )
+ *     ),
+ *     literal("give",
+ *       argument("target", ArgumentType.player).permission("shop.give").executes { ctx => ... }
+ *     )
+ *   )
+ * )
+ * }}}
+ */
+object Commands:
+
+  /** Root of a command; `name` must be declared in plugin.yml. */
+  def command(name: String, children: CommandBuilder*): CommandBuilder =
+    new CommandBuilder(name, null, children)
+
+  /** A fixed word (case-insensitive). */
+  def literal(name: String, children: CommandBuilder*): CommandBuilder =
+    new CommandBuilder(name, null, children)
+
+  /** A typed argument; its value is available as `ctx[A](name)`. */
+  def argument[A](name: String, argumentType: ArgumentType[A], children: CommandBuilder*): CommandBuilder =
+    new CommandBuilder(name, argumentType, children)
+
+/**
+ * Mutable definition of one node. Compiled once by [[CommandTree.compile]].
+ */
+final class CommandBuilder private[scala] (
+  val name: String,
+  val argumentType: ArgumentType[?], // null for literals
+  val children: Seq[CommandBuilder]
+):
+  private[scala] var _executor: CommandContext => Unit = null
+  private[scala] var _permission: String = null
+
+  /** Run `body` when the command ends at this node. */
+  def executes(body: CommandContext => Unit): CommandBuilder =
+    _executor = body
+    this
+
+  /** Require `node` to use this node and everything below it. */
+  def permission(node: String): CommandBuilder =
+    _permission = node
+    this
+
+/**
+ * Arguments of one command invocation.
+ */
+final class CommandContext private[scala] (
+  val sender: CommandSender,
+  val label: String,
+  names: Array[String],
+  values: Array[Any]
+):
+  /** Value of the argument `name` on the matched path. */
+  def apply[A](name: String): A =
+    var i = 0
+    while i < names.length do
+      if names(i) == name then return values(i).asInstanceOf[A]
+      i += 1
+    throw new IllegalArgumentException(s"No argument '$name' on this command path")
+
+  def reply(message: String): Unit = sender.sendMessage(message)
+
+/**
+ * Immutable command trie compiled from a [[CommandBuilder]].
+ *
+ * Each node keeps its literal children in an array sorted case-insensitively, so
+ * dispatch is a binary search per argument and tab completion is a prefix range
+ * scan. Argument children are tried in declaration order after literals. Dispatch
+ * walks the raw argument array and allocates only the value array and context.
+ *
+ * Usage lines are precomputed per node; an unmatched command shows those of the
+ * deepest node it reached.
+ */
+final class CommandTree private (root: CommandTree.Node, maxDepth: Int) extends CommandExecutor with TabCompleter:
+  import CommandTree.*
+
+  def name: String = root.name
+
+  override def onCommand(sender: CommandSender, command: Command, label: String, args: Array[String]): Boolean =
+    if !permitted(root, sender) then return true
+    val values = new Array[Any](maxDepth)
+    var node = root
+    var i = 0
+    var matched = true
+    while matched && i < args.length do
+      val next = step(node, args, i, sender, values)
+      if next == null then matched = false
+      else if !permitted(next, sender) then return true
+      else
+        node = next
+        i = if next.argumentType != null && next.argumentType.isGreedy then args.length else i + 1
+
+    if matched && node.executor != null then
+      val context = new CommandContext(sender, label, node.path, values)
+      if ScalaProfiler.ENABLED then
+        val start = ScalaProfiler.start(node.probe)
+        try node.executor(context)
+        finally ScalaProfiler.stop(node.probe, start)
+      else node.executor(context)
+    else
+      var line = 0
+      while line < node.usage.length do
+        sender.sendMessage(node.usage(line))
+        line += 1
+    true
+
+  override def onTabComplete(sender: CommandSender, command: Command, alias: String, args: Array[String]): java.util.List[String] =
+    if args.length == 0 || !permitted(root, sender, quiet = true) then return Collections.emptyList()
+    val values = new Array[Any](maxDepth)
+    var node = root
+    var i = 0
+    while i < args.length - 1 do
+      val next = step(node, args, i, sender, values)
+      if next == null || !permitted(next, sender, quiet = true) then return Collections.emptyList()
+      if next.argumentType != null && next.argumentType.isGreedy then return Collections.emptyList()
+      node = next
+      i += 1
+
+    val prefix = args(args.length - 1)
+    val out = new java.util.ArrayList[String]()
+    val literals = node.literalNames
+    var l = PrefixIndex.lowerBound(literals, prefix)
+    while l < literals.length && literals(l).regionMatches(true, 0, prefix, 0, prefix.length) do
+      if permitted(node.literalNodes(l), sender, quiet = true) then out.add(literals(l))
+      l += 1
+    var a = 0
+    while a < node.arguments.length do
+      val argument = node.arguments(a)
+      if permitted(argument, sender, quiet = true) then argument.argumentType.suggest(prefix, sender, out)
+      a += 1
+    out
+
+  /** Child of `node` matching `args(i)`, or null. Stores parsed argument values. */
+  private def step(node: Node, args: Array[String], i: Int, sender: CommandSender, values: Array[Any]): Node =
+    val input = args(i)
+    val literal = Arrays.binarySearch(node.literalNames, input, String.CASE_INSENSITIVE_ORDER)
+    if literal >= 0 then return node.literalNodes(literal)
+
+    var a = 0
+    while a < node.arguments.length do
+      val argument = node.arguments(a)
+      val text = if argument.argumentType.isGreedy then joinFrom(args, i) else input
+      val value = argument.argumentType.parse(text, sender)
+      if value != ArgumentType.Invalid then
+        values(argument.depth) = value
+        return argument
+      a += 1
+    null
+
+  private def joinFrom(args: Array[String], from: Int): String =
+    val sb = new java.lang.StringBuilder(args(from))
+    var i = from + 1
+    while i < args.length do
+      sb.append(' ').append(args(i))
+      i += 1
+    sb.toString
+
+  private def permitted(node: Node, sender: CommandSender, quiet: Boolean = false): Boolean =
+    if node.permission == null || sender.hasPermission(node.permission) then true
+    else
+      if !quiet then sender.sendMessage("§cYou do not have permission to use this command.")
+      false
+
+object CommandTree:
+
+  /** Compile a definition. Call once, at enable time. */
+  def compile(definition: CommandBuilder): CommandTree = compile(definition, null)
+
+  /** Compile a definition whose executors are profiled under plugin `owner` (see [[ScalaProfiler]]). */
+  def compile(definition: CommandBuilder, owner: String): CommandTree =
+    var maxDepth = 0
+    def build(builder: CommandBuilder, depth: Int, path: List[String], usagePrefix: String): Node =
+      val isArgument = builder.argumentType != null
+      val names = if isArgument then (builder.name :: path) else path
+      val argumentDepth = if isArgument then depth else -1
+      val childDepth = if isArgument then depth + 1 else depth
+      if childDepth > maxDepth then maxDepth = childDepth
+
+      val token = if isArgument then builder.argumentType.describe(builder.name) else builder.name
+      val usage = if usagePrefix.isEmpty then s"/$token" else s"$usagePrefix $token"
+
+      val (literalBuilders, argumentBuilders) = builder.children.partition(_.argumentType == null)
+      val sortedLiterals = literalBuilders.sortWith((a, b) => String.CASE_INSENSITIVE_ORDER.compare(a.name, b.name) < 0)
+      val literalNodes = sortedLiterals.map(child => build(child, childDepth, names, usage)).toArray
+      val argumentNodes = argumentBuilders.map(child => build(child, childDepth, names, usage)).toArray
+
+      if builder.argumentType != null && builder.argumentType.isGreedy && builder.children.nonEmpty then
+        throw new IllegalArgumentException(s"Greedy argument '${builder.name}' cannot have children")
+
+      val usageLines =
+        val own = if builder._executor != null then List(usage) else Nil
+        (own ++ literalNodes.flatMap(_.usage) ++ argumentNodes.flatMap(_.usage)).toArray
+
+      new Node(
+        builder.name,
+        builder.argumentType.asInstanceOf[ArgumentType[Any]],
+        argumentDepth,
+        sortedLiterals.map(_.name).toArray,
+        literalNodes,
+        argumentNodes,
+        builder._executor,
+        builder._permission,
+        names.reverse.toArray,
+        usageLines,
+        if owner != null && builder._executor != null then ScalaProfiler.probe(owner, s"command $usage") else null
+      )
+
+    val root = build(definition, 0, Nil, "")
+    new CommandTree(root, maxDepth)
+
+  private[scala] final class Node(
+    val name: String,
+    val argumentType: ArgumentType[Any], // null for literals
+    val depth: Int,
+    val literalNames: Array[String],
+    val literalNodes: Array[Node],
+    val arguments: Array[Node],
+    val executor: CommandContext => Unit, // null if the command cannot end here
+    val permission: String,
+    val path: Array[String],
+    val usage: Array[String],
+    val probe: ScalaProfiler.Probe // null unless profiling
+  )
@@ -0,0 +1,229 @@
+package dev.nailed.bukkit.scala
+
+import org.bukkit.event.{Event, EventException, EventPriority, HandlerList, Listener}
+import org.bukkit.event.player.{PlayerEvent, PlayerMoveEvent}
+import org.bukkit.plugin.EventExecutor
+import org.bukkit.scheduler.BukkitTask
+import java.util.UUID
+import scala.concurrent.duration.FiniteDuration
+import scala.util.control.NonFatal
+
+/**
+ * A test applied to an event before any handler code runs. Must not allocate on the
+ * rejecting path - that is the point of pushing it down.
+ */
+trait EventFilter[-E]:
+  def test(event: E): Boolean
+
+object EventFilter:
+
+  /** Only moves to another block (or world); head rotation and sub-block moves are dropped. */
+  val blockChanged: EventFilter[PlayerMoveEvent] = event =>
+    val from = event.getFrom
+    val to = event.getTo
+    to != null && (
+      from.getBlockX != to.getBlockX || from.getBlockY != to.getBlockY || from.getBlockZ != to.getBlockZ
+        || (from.getWorld ne to.getWorld))
+
+  /** Only moves into another chunk (or world). */
+  val chunkChanged: EventFilter[PlayerMoveEvent] = event =>
+    val from = event.getFrom
+    val to = event.getTo
+    to != null && (
+      (from.getBlockX >> 4) != (to.getBlockX >> 4) || (from.getBlockZ >> 4) != (to.getBlockZ >> 4)
+        || (from.getWorld ne to.getWorld))
+
+/**
+ * Declarative subscription to one event type, built next to [[BukkitPlugin.registerEvents]].
+ *
+ * {{{
+ * events[PlayerMoveEvent]()
+ *   .filter(EventFilter.blockChanged)
+ *   .throttlePerPlayer(250.millis)
+ *   .foreach(e => regions.enter(e.getPlayer, e.getTo))
+ *
+ * events[InventoryClickEvent]()
+ *   .coalesce(_.getWhoClicked.getUniqueId) { batch =>   // latest click per player, once per tick
+ *     batch.foreach(e => refresh(e.getWhoClicked))
+ *   }
+ * }}}
+ *
+ * Architecture:
+ * - The stages compile into one EventExecutor: the instanceof check and every filter run in a
+ *   loop over an array before user code is reached; an event that fails a filter costs those
+ *   tests and allocates nothing
+ * - [[throttle]] keeps the last accepted time per UUID off-heap ([[PlayerRecords]]), so it
+ *   allocates nothing either, and player entries are dropped on quit
+ * - [[batched]] and [[coalesce]] collect accepted events and deliver them at most once per
+ *   window of ticks on the main thread; coalescing keeps only the latest event per key
+ *
+ * Batched handlers run after the events were dispatched: cancelling or modifying them there
+ * has no effect. The stream is registered by its terminal operation and unregistered on
+ * disable like any listener.
+ */
+final class EventStream[E <: Event] private[scala] (
+  owner: BukkitPlugin,
+  eventClass: Class[E],
+  priority: EventPriority,
+  ignoreCancelled: Boolean,
+  filters: Vector[EventFilter[E]]
+):
+
+  /** Drop events for which `filter` is false before any later stage runs. Takes a lambda too. */
+  def filter(filter: EventFilter[E]): EventStream[E] =
+    new EventStream(owner, eventClass, priority, ignoreCancelled, filters :+ filter)
+
+  /**
+   * Accept at most one event per `interval` for each UUID `key` returns (usually the player's).
+   * Entries of players are dropped when they quit; other keys live as long as the plugin.
+   */
+  def throttle(interval: FiniteDuration, key: E => UUID): EventStream[E] =
+    filter(new EventStream.Throttle[E](owner.playerRecords(8), interval.toNanos, key))
+
+  /** [[throttle]] keyed by the event's player. */
+  def throttlePerPlayer(interval: FiniteDuration)(using player: E <:< PlayerEvent): EventStream[E] =
+    throttle(interval, event => player(event).getPlayer.getUniqueId)
+
+  /** Call `handler` for every event that passes the filters, during dispatch. */
+  def foreach(handler: E => Unit): EventSubscription =
+    subscribe(handler, null)
+
+  /**
+   * Collect the events that pass the filters and hand them to `handler` on the main thread
+   * at most once every `everyTicks` ticks. The batch is reused - do not keep it.
+   */
+  def batched(everyTicks: Int = 1)(handler: EventBatch[E] => Unit): EventSubscription =
+    window(new EventStream.Window[E, Any](null, handler), everyTicks)
+
+  /**
+   * Like [[batched]], but of the events with the same `key` in a window only the latest is
+   * delivered - e.g. one inventory refresh per player per tick however often they click.
+   */
+  def coalesce[K](key: E => K, everyTicks: Int = 1)(handler: EventBatch[E] => Unit): EventSubscription =
+    window(new EventStream.Window[E, K](key, handler), everyTicks)
+
+  private def window[K](window: EventStream.Window[E, K], everyTicks: Int): EventSubscription =
+    val period = math.max(1, everyTicks).toLong
+    val task = owner.server.getScheduler.runTaskTimer(owner.plugin, (() => window.flush(owner.logger)): Runnable, period, period)
+    subscribe(window.add, task)
+
+  private def subscribe(sink: E => Unit, task: BukkitTask): EventSubscription =
+    val listener = new Listener {}
+    val probe = ScalaProfiler.probe(owner.plugin.getName, s"stream ${eventClass.getSimpleName}")
+    val executor = new EventStream.StreamExecutor[E](eventClass, filters.toArray[EventFilter[?]], sink, probe)
+    owner.pluginManager.registerEvent(eventClass, listener, priority, executor, owner.plugin, ignoreCancelled)
+    new EventSubscription(listener, task)
+
+object EventStream:
+
+  /** Instanceof check, filters and sink in one executor. */
+  private[scala] final class StreamExecutor[E <: Event](
+    eventClass: Class[E],
+    filters: Array[EventFilter[?]],
+    sink: E => Unit,
+    probe: ScalaProfiler.Probe // null unless profiling
+  ) extends EventExecutor:
+
+    override def execute(listener: Listener, event: Event): Unit =
+      // Handler lists are shared with subclass events
+      if eventClass.isInstance(event) && accepts(event.asInstanceOf[E]) then
+        val start = ScalaProfiler.start(probe)
+        try sink(event.asInstanceOf[E])
+        catch case NonFatal(e) => throw new EventException(e)
+        finally ScalaProfiler.stop(probe, start)
+
+    private def accepts(event: E): Boolean =
+      var i = 0
+      while i < filters.length do
+        if !filters(i).asInstanceOf[EventFilter[E]].test(event) then return false
+        i += 1
+      true
+
+  private[scala] final class Throttle[E](records: PlayerRecords, intervalNanos: Long, key: E => UUID) extends EventFilter[E]:
+    def test(event: E): Boolean =
+      val id = key(event)
+      val now = System.nanoTime()
+      val last = records.getLong(id, 0)
+      // 0 means never: a stored time of exactly 0 only costs one extra event
+      if last != 0L && now - last < intervalNanos then false
+      else
+        records.putLong(id, 0, now)
+        true
+
+  /** Double-buffered collection of one window; `key` null for plain batching. */
+  private[scala] final class Window[E, K](key: E => K, handler: EventBatch[E] => Unit):
+    private var filling = new EventBatch[E]()
+    private var spare = new EventBatch[E]()
+    private val positions = if key == null then null else new java.util.HashMap[K, Integer]()
+
+    def add(event: E): Unit = synchronized {
+      if positions == null then filling.add(event)
+      else
+        val k = key(event)
+        val position = positions.get(k)
+        if position == null then
+          positions.put(k, filling.size)
+          filling.add(event)
+        else filling.set(position.intValue, event)
+    }
+
+    def flush(logger: java.util.logging.Logger): Unit =
+      val batch = synchronized {
+        if filling.isEmpty then null
+        else
+          val full = filling
+          filling = spare
+          spare = full
+          if positions != null then positions.clear()
+          full
+      }
+      if batch != null then
+        try handler(batch)
+        catch case NonFatal(e) => logger.log(java.util.logging.Level.SEVERE, "[Scala SDK] Event batch handler failed", e)
+        finally batch.clear()
+
+/**
+ * Events of one window of a [[EventStream]], in arrival order. Only valid during the
+ * handler call - the SDK reuses it for a later window.
+ */
+final class EventBatch[E] private[scala] ():
+  private var items = new Array[AnyRef](16)
+  private var _size = 0
+
+  def size: Int = _size
+  def isEmpty: Boolean = _size == 0
+
+  def apply(index: Int): E =
+    if index < 0 || index >= _size then throw new IndexOutOfBoundsException(index.toString)
+    items(index).asInstanceOf[E]
+
+  def foreach(f: E => Unit): Unit =
+    var i = 0
+    while i < _size do
+      f(items(i).asInstanceOf[E])
+      i += 1
+
+  /** A copy that may be kept. */
+  def toVector: Vector[E] =
+    val out = Vector.newBuilder[E]
+    foreach(out += _)
+    out.result()
+
+  private[scala] def add(event: E): Unit =
+    if _size == items.length then items = java.util.Arrays.copyOf(items, _size * 2)
+    items(_size) = event.asInstanceOf[AnyRef]
+    _size += 1
+
+  private[scala] def set(index: Int, event: E): Unit = items(index) = event.asInstanceOf[AnyRef]
+
+  private[scala] def clear(): Unit =
+    java.util.Arrays.fill(items, 0, _size, null)
+    _size = 0
+
+/** A registered [[EventStream]]. */
+final class EventSubscription private[scala] (listener: Listener, task: BukkitTask):
+
+  /** Stop receiving events; events still waiting for a batch are dropped. */
+  def cancel(): Unit =
+    HandlerList.unregisterAll(listener)
+    if task != null then task.cancel()
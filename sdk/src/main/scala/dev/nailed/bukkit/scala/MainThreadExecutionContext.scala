@@ -0,0 +1,68 @@
+package dev.nailed.bukkit.scala
+
+import org.bukkit.plugin.Plugin
+import org.bukkit.scheduler.BukkitTask
+import java.util.concurrent.{ConcurrentLinkedQueue, RejectedExecutionException}
+import java.util.logging.Level
+import scala.concurrent.ExecutionContextExecutor
+import scala.util.control.NonFatal
+
+/**
+ * ExecutionContext that runs tasks on the server main thread.
+ *
+ * Tasks from any thread go into a lock-free queue (many producers, one consumer) that
+ * a single repeating scheduler task drains once per tick. Draining stops when the
+ * per-tick budget is used up and resumes on the next tick, so a burst of callbacks
+ * cannot stall a tick - but at least one task runs per tick, so the queue always
+ * makes progress.
+ *
+ * Tasks submitted from the main thread are queued as well: they run on the next
+ * drain, never re-entrantly inside the caller.
+ *
+ * Obtain it through [[BukkitPlugin.mainThread]], which also shuts it down on disable.
+ */
+final class MainThreadExecutionContext(plugin: Plugin, budgetNanos: Long) extends ExecutionContextExecutor:
+
+  private val queue = new ConcurrentLinkedQueue[Runnable]()
+  @volatile private var closed = false
+  private val probe = ScalaProfiler.probe(plugin.getName, "task mainThread")
+
+  private val task: BukkitTask =
+    plugin.getServer.getScheduler.runTaskTimer(plugin, (() => drain()): Runnable, 1L, 1L)
+
+  override def execute(runnable: Runnable): Unit =
+    if closed then
+      throw new RejectedExecutionException(s"[Scala SDK] Main-thread context of ${plugin.getName} is shut down")
+    queue.offer(runnable)
+
+  override def reportFailure(cause: Throwable): Unit =
+    plugin.getLogger.log(Level.SEVERE, "[Scala SDK] Main-thread task failed", cause)
+
+  /** Number of queued tasks. Walks the queue - for diagnostics, not hot paths. */
+  def pending: Int = queue.size
+
+  /**
+   * Stop draining and reject new tasks. Tasks already queued run now, on the calling
+   * (main) thread, so callbacks such as "save on completion" are not lost.
+   */
+  def shutdown(): Unit =
+    if !closed then
+      closed = true
+      task.cancel()
+      var next = queue.poll()
+      while next != null do
+        run(next)
+        next = queue.poll()
+
+  private def drain(): Unit =
+    val deadline = System.nanoTime() + budgetNanos
+    var next = queue.poll()
+    while next != null do
+      run(next)
+      next = if System.nanoTime() - deadline < 0 then queue.poll() else null
+
+  private def run(runnable: Runnable): Unit =
+    val start = ScalaProfiler.start(probe)
+    try runnable.run()
+    catch case NonFatal(e) => reportFailure(e)
+    finally ScalaProfiler.stop(probe, start)
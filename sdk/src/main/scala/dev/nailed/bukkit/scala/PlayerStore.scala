@@ -0,0 +1,615 @@
+package dev.nailed.bukkit.scala
+
+import org.bukkit.entity.Player
+import java.io.{ByteArrayInputStream, ByteArrayOutputStream, DataInputStream, DataOutputStream, File}
+import java.nio.{ByteBuffer, ByteOrder}
+import java.nio.file.{AtomicMoveNotSupportedException, Files, StandardCopyOption}
+import java.util.UUID
+import java.util.concurrent.{ConcurrentHashMap, RejectedExecutionException}
+import java.util.concurrent.locks.StampedLock
+import java.util.logging.{Level, Logger}
+import scala.concurrent.{ExecutionContext, Future}
+import scala.util.control.NonFatal
+
+/**
+ * Per-player state, keyed by UUID and evicted when the player quits.
+ *
+ * A drop-in for `mutable.Map[UUID, PlayerData]` without its costs:
+ * - Keys are the two `long` halves of the UUID in open-addressing tables (linear probing,
+ *   backward-shift deletion) - no boxed keys, no entry objects, no UUID.hashCode chains
+ * - The key space is split over independently locked stripes; reads are optimistic
+ *   (StampedLock) and take no lock unless they race with a write to the same stripe
+ * - Entries are evicted one tick after PlayerQuitEvent, so other quit handlers still see them
+ * - With a [[PlayerStore.Codec]], values marked dirty are written behind to the data folder
+ *   on [[BukkitPlugin.async]], evicted values are written on quit, and everything left is
+ *   written on disable. [[load]] reads a value back, e.g. from AsyncPlayerPreLoginEvent.
+ *
+ * Prefer immutable values (case classes) replaced with [[put]] or [[modify]]: write-behind
+ * encodes them off the main thread.
+ *
+ * Obtain it through [[BukkitPlugin.playerStore]].
+ */
+final class PlayerStore[V <: AnyRef] private[scala] (stripeCount: Int, writeBehind: PlayerStore.WriteBehind[V])
+  extends PlayerStore.Evictable:
+
+  private val stripes = Array.fill(stripeCount)(new PlayerStore.ObjectStripe(PlayerStore.InitialCapacity))
+  private val stripeMask = stripeCount - 1
+  private val live: UUID => V = id => get(id)
+
+  /** Value of the player, or null. */
+  def get(player: Player): V = get(player.getUniqueId)
+
+  /** Value of `id`, or null. */
+  def get(id: UUID): V = get(id.getMostSignificantBits, id.getLeastSignificantBits)
+
+  /** Value of the UUID with the given halves, or null. */
+  def get(most: Long, least: Long): V =
+    val hash = UuidTable.hash(most, least)
+    val stripe = stripeOf(hash)
+    val lock = stripe.lock
+    val stamp = lock.tryOptimisticRead()
+    var value = stripe.valueOf(most, least, hash)
+    if !lock.validate(stamp) then
+      val read = lock.readLock()
+      try value = stripe.valueOf(most, least, hash)
+      finally lock.unlockRead(read)
+    value.asInstanceOf[V]
+
+  def contains(id: UUID): Boolean = get(id) != null
+
+  /** Value of `id`, or `create` stored and returned. `create` runs under the stripe lock - keep it cheap. */
+  def getOrElseUpdate(id: UUID)(create: => V): V =
+    val existing = get(id)
+    if existing != null then existing
+    else
+      val most = id.getMostSignificantBits
+      val least = id.getLeastSignificantBits
+      val hash = UuidTable.hash(most, least)
+      val stripe = stripeOf(hash)
+      val stamp = stripe.lock.writeLock()
+      try
+        val slot = stripe.find(most, least, hash)
+        if slot >= 0 then stripe.values(slot).asInstanceOf[V]
+        else
+          val value = create
+          requireValue(value)
+          // slotFor may resize, so it has to run before `values` is read
+          val free = stripe.slotFor(most, least, hash)
+          stripe.values(free) = value
+          value
+      finally stripe.lock.unlockWrite(stamp)
+
+  /** Store `value` for `id` and mark it dirty. Returns the previous value, or null. */
+  def put(id: UUID, value: V): V =
+    requireValue(value)
+    val most = id.getMostSignificantBits
+    val least = id.getLeastSignificantBits
+    val hash = UuidTable.hash(most, least)
+    val stripe = stripeOf(hash)
+    val stamp = stripe.lock.writeLock()
+    val previous =
+      try
+        val slot = stripe.slotFor(most, least, hash)
+        val old = stripe.values(slot)
+        stripe.values(slot) = value
+        old.asInstanceOf[V]
+      finally stripe.lock.unlockWrite(stamp)
+    markDirty(id)
+    previous
+
+  /**
+   * Replace the value of `id` with `f(value)` atomically and mark it dirty.
+   * Returns the new value, or null (without calling `f`) if there is none.
+   */
+  def modify(id: UUID)(f: V => V): V =
+    val most = id.getMostSignificantBits
+    val least = id.getLeastSignificantBits
+    val hash = UuidTable.hash(most, least)
+    val stripe = stripeOf(hash)
+    val stamp = stripe.lock.writeLock()
+    val updated =
+      try
+        val slot = stripe.find(most, least, hash)
+        if slot < 0 then null.asInstanceOf[V]
+        else
+          val next = f(stripe.values(slot).asInstanceOf[V])
+          requireValue(next)
+          stripe.values(slot) = next
+          next
+      finally stripe.lock.unlockWrite(stamp)
+    if updated != null then markDirty(id)
+    updated
+
+  /** Remove the value of `id` without writing it. Returns it, or null. */
+  def remove(id: UUID): V =
+    val value = removeEntry(id.getMostSignificantBits, id.getLeastSignificantBits)
+    if writeBehind != null then writeBehind.dirty.remove(id)
+    value
+
+  /** Number of entries. Not atomic across stripes. */
+  def size: Int =
+    var total = 0
+    var i = 0
+    while i < stripes.length do
+      total += stripes(i).size
+      i += 1
+    total
+
+  /**
+   * Call `f` for every entry. Each stripe is copied under its read lock and `f` runs
+   * outside of it, so `f` may modify the store.
+   */
+  def foreach(f: (UUID, V) => Unit): Unit =
+    var i = 0
+    while i < stripes.length do
+      val stripe = stripes(i)
+      val stamp = stripe.lock.readLock()
+      val (most, least, values) =
+        try stripe.copyEntries()
+        finally stripe.lock.unlockRead(stamp)
+      var e = 0
+      while e < values.length do
+        f(new UUID(most(e), least(e)), values(e).asInstanceOf[V])
+        e += 1
+      i += 1
+
+  /** Schedule the value of `id` for the next write-behind flush. No-op without a codec. */
+  def markDirty(id: UUID): Unit =
+    if writeBehind != null then writeBehind.dirty.add(id)
+
+  /**
+   * The value of `id`: the stored one if present, else the one written to disk, else `default`.
+   * The file is read on [[BukkitPlugin.async]]; the result is stored unless a value appeared meanwhile.
+   */
+  def load(id: UUID, default: => V): Future[V] =
+    val present = get(id)
+    if present != null then Future.successful(present)
+    else if writeBehind == null then Future.successful(getOrElseUpdate(id)(default))
+    else
+      Future {
+        val pending = writeBehind.pending.get(id)
+        val value = if pending != null then pending else writeBehind.read(id)
+        getOrElseUpdate(id)(if value != null then value else default)
+      }(writeBehind.io)
+
+  /** Write every dirty value on [[BukkitPlugin.async]]. Returns the number written. */
+  def flush(): Future[Int] =
+    if writeBehind == null then Future.successful(0)
+    else Future(flushDirty())(writeBehind.io)
+
+  private[scala] override def evict(id: UUID): Unit =
+    val value = removeEntry(id.getMostSignificantBits, id.getLeastSignificantBits)
+    if writeBehind != null && value != null then
+      writeBehind.dirty.remove(id)
+      // Readable by load() until it is on disk, so a quick rejoin never sees stale data
+      writeBehind.pending.put(id, value)
+      try writeBehind.io.execute(() => writeBehind.writeLatest(id, live))
+      catch case _: RejectedExecutionException => writeBehind.writeLatest(id, live) // disabling
+
+  /** Write everything dirty or pending on the calling thread. Called on disable. */
+  private[scala] override def close(): Unit =
+    if writeBehind != null then
+      flushDirty()
+      val it = writeBehind.pending.keySet.iterator()
+      while it.hasNext do writeBehind.writeLatest(it.next(), live)
+
+  private def flushDirty(): Int =
+    var written = 0
+    val it = writeBehind.dirty.iterator()
+    while it.hasNext do
+      val id = it.next()
+      it.remove()
+      // The value is picked under the file lock, not here: an eviction may write a newer one first
+      if writeBehind.writeLatest(id, live) then written += 1
+    written
+
+  private def removeEntry(most: Long, least: Long): V =
+    val hash = UuidTable.hash(most, least)
+    val stripe = stripeOf(hash)
+    val stamp = stripe.lock.writeLock()
+    try
+      val slot = stripe.find(most, least, hash)
+      if slot < 0 then null.asInstanceOf[V]
+      else
+        val value = stripe.values(slot)
+        stripe.removeAt(slot)
+        value.asInstanceOf[V]
+    finally stripe.lock.unlockWrite(stamp)
+
+  private def stripeOf(hash: Long): PlayerStore.ObjectStripe =
+    // Slots use the low bits of the hash, stripes the high ones
+    stripes((hash >>> 40).toInt & stripeMask)
+
+  private def requireValue(value: AnyRef): Unit =
+    if value == null then throw new NullPointerException("[Scala SDK] PlayerStore values cannot be null")
+
+object PlayerStore:
+
+  /**
+   * Binary form of a value for write-behind. `read` must accept what `write` produced by
+   * earlier versions of the plugin - write a version number first if the format may change.
+   */
+  trait Codec[V]:
+    def write(value: V, out: DataOutputStream): Unit
+    def read(in: DataInputStream): V
+
+  private[scala] val InitialCapacity = 16
+
+  /** Stripe count for the machine: a power of two, at least twice the core count. */
+  private[scala] def defaultStripes: Int =
+    Integer.highestOneBit(math.max(8, Runtime.getRuntime.availableProcessors * 2) - 1) << 1
+
+  /** Something [[BukkitPlugin]] evicts players from on quit and closes on disable. */
+  sealed trait Evictable:
+    private[scala] def evict(id: UUID): Unit
+    private[scala] def close(): Unit
+
+  /** One stripe: UUID table plus an object per slot. */
+  private[scala] final class ObjectStripe(capacity: Int) extends UuidTable(capacity):
+    var values = new Array[AnyRef](capacity)
+    private var resized: Array[AnyRef] = null
+
+    /** Value in the slot of the key, or null. Safe under an optimistic read. */
+    def valueOf(most: Long, least: Long, hash: Long): AnyRef =
+      val vs = values
+      val slot = find(most, least, hash)
+      if slot >= 0 && slot < vs.length then vs(slot) else null
+
+    def copyEntries(): (Array[Long], Array[Long], Array[AnyRef]) =
+      val outMost = new Array[Long](size)
+      val outLeast = new Array[Long](size)
+      val outValues = new Array[AnyRef](size)
+      var n = 0
+      var slot = 0
+      while slot < capacityNow do
+        if isUsed(slot) then
+          outMost(n) = mostAt(slot)
+          outLeast(n) = leastAt(slot)
+          outValues(n) = values(slot)
+          n += 1
+        slot += 1
+      (outMost, outLeast, outValues)
+
+    protected def allocate(capacity: Int): Unit = resized = new Array[AnyRef](capacity)
+    protected def transfer(from: Int, to: Int): Unit = resized(to) = values(from)
+    protected def commit(): Unit =
+      values = resized
+      resized = null
+    protected def moveSlot(from: Int, to: Int): Unit = values(to) = values(from)
+    protected def clearSlot(slot: Int): Unit = values(slot) = null
+
+  /** Write-behind state of one store. */
+  private[scala] final class WriteBehind[V](folder: File, codec: Codec[V], val io: ExecutionContext, logger: Logger):
+    // Marked by put/modify/markDirty, drained by flush
+    val dirty: java.util.Set[UUID] = ConcurrentHashMap.newKeySet[UUID]()
+    // Evicted on quit, not yet on disk
+    val pending = new ConcurrentHashMap[UUID, V]()
+    // Serializes writes of the same file; see writeLatest
+    private val fileLocks = Array.fill(16)(new Object)
+
+    def read(id: UUID): V =
+      val file = fileOf(id)
+      if !file.isFile then null.asInstanceOf[V]
+      else
+        val in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file.toPath)))
+        codec.read(in)
+
+    /**
+     * Write the newest value of `id` under the file's lock: the live one (`live(id)`), else the
+     * one pending since eviction. A live value is always newer - it can only reappear after the
+     * eviction, e.g. loaded from `pending` on rejoin. Picking the value under the lock means a
+     * write that started earlier can never overwrite a newer one. False if nothing was written.
+     */
+    def writeLatest(id: UUID, live: UUID => V): Boolean =
+      fileLocks(id.hashCode & (fileLocks.length - 1)).synchronized {
+        val evicted = pending.get(id)
+        val current = live(id)
+        val value = if current != null then current else evicted
+        val written = value != null && write(id, value)
+        // Written, superseded by the live value, or failed and logged - it is not kept around
+        if evicted != null then pending.remove(id, evicted)
+        written
+      }
+
+    private def write(id: UUID, value: V): Boolean =
+      try
+        val bytes = new ByteArrayOutputStream(256)
+        val out = new DataOutputStream(bytes)
+        codec.write(value, out)
+        out.flush()
+        folder.mkdirs()
+        val target = fileOf(id).toPath
+        val temp = new File(folder, s"$id.tmp").toPath
+        Files.write(temp, bytes.toByteArray)
+        try Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+        catch case _: AtomicMoveNotSupportedException => Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING)
+        true
+      catch case NonFatal(e) =>
+        logger.log(Level.SEVERE, s"[Scala SDK] Could not write player data $id to ${folder.getName}", e)
+        false
+
+    private def fileOf(id: UUID): File = new File(folder, s"$id.dat")
+
+/**
+ * Per-player fixed-layout records stored off-heap, keyed by UUID and evicted on quit.
+ *
+ * Each player has `recordSize` bytes in a direct ByteBuffer of its stripe; fields are
+ * addressed by byte offset, so counters and statistics cost no objects at all and stay
+ * out of the heap the GC scans:
+ *
+ * {{{
+ * val Kills = 0; val Deaths = 4; val PlayTime = 8
+ * lazy val stats = playerRecords(16)
+ * stats.addInt(player.getUniqueId, Kills, 1)
+ * }}}
+ *
+ * Missing players read as zero; writing a field creates a zeroed record. Each read-modify-write
+ * method is atomic. Records are dropped on quit - use a [[PlayerStore]] with a codec to persist.
+ *
+ * Obtain it through [[BukkitPlugin.playerRecords]].
+ */
+final class PlayerRecords private[scala] (val recordSize: Int, stripeCount: Int) extends PlayerStore.Evictable:
+
+  private val stripes = Array.fill(stripeCount)(new PlayerRecords.RecordStripe(PlayerStore.InitialCapacity, recordSize))
+  private val stripeMask = stripeCount - 1
+
+  def contains(id: UUID): Boolean =
+    val most = id.getMostSignificantBits
+    val least = id.getLeastSignificantBits
+    val hash = UuidTable.hash(most, least)
+    val stripe = stripeOf(hash)
+    val stamp = stripe.lock.tryOptimisticRead()
+    var found = stripe.find(most, least, hash) >= 0
+    if !stripe.lock.validate(stamp) then
+      val read = stripe.lock.readLock()
+      try found = stripe.find(most, least, hash) >= 0
+      finally stripe.lock.unlockRead(read)
+    found
+
+  def getInt(id: UUID, offset: Int): Int = read(id, offset, 4).toInt
+  def getLong(id: UUID, offset: Int): Long = read(id, offset, 8)
+  def getDouble(id: UUID, offset: Int): Double = java.lang.Double.longBitsToDouble(read(id, offset, 8))
+
+  def putInt(id: UUID, offset: Int, value: Int): Unit = write(id, offset, 4, _ => value.toLong)
+  def putLong(id: UUID, offset: Int, value: Long): Unit = write(id, offset, 8, _ => value)
+  def putDouble(id: UUID, offset: Int, value: Double): Unit =
+    write(id, offset, 8, _ => java.lang.Double.doubleToRawLongBits(value))
+
+  /** Add `delta` to an int field atomically. Returns the new value. */
+  def addInt(id: UUID, offset: Int, delta: Int): Int = write(id, offset, 4, _.toInt + delta).toInt
+
+  /** Add `delta` to a long field atomically. Returns the new value. */
+  def addLong(id: UUID, offset: Int, delta: Long): Long = write(id, offset, 8, _ + delta)
+
+  /** Add `delta` to a double field atomically. Returns the new value. */
+  def addDouble(id: UUID, offset: Int, delta: Double): Double =
+    java.lang.Double.longBitsToDouble(write(id, offset, 8, bits =>
+      java.lang.Double.doubleToRawLongBits(java.lang.Double.longBitsToDouble(bits) + delta)))
+
+  /** Drop the record of `id`. */
+  def remove(id: UUID): Unit =
+    val most = id.getMostSignificantBits
+    val least = id.getLeastSignificantBits
+    val hash = UuidTable.hash(most, least)
+    val stripe = stripeOf(hash)
+    val stamp = stripe.lock.writeLock()
+    try
+      val slot = stripe.find(most, least, hash)
+      if slot >= 0 then stripe.removeAt(slot)
+    finally stripe.lock.unlockWrite(stamp)
+
+  /** Number of records. Not atomic across stripes. */
+  def size: Int =
+    var total = 0
+    var i = 0
+    while i < stripes.length do
+      total += stripes(i).size
+      i += 1
+    total
+
+  private[scala] override def evict(id: UUID): Unit = remove(id)
+  private[scala] override def close(): Unit = ()
+
+  private def read(id: UUID, offset: Int, width: Int): Long =
+    checkField(offset, width)
+    val most = id.getMostSignificantBits
+    val least = id.getLeastSignificantBits
+    val hash = UuidTable.hash(most, least)
+    val stripe = stripeOf(hash)
+    val stamp = stripe.lock.tryOptimisticRead()
+    var value = stripe.field(most, least, hash, offset, width)
+    if !stripe.lock.validate(stamp) then
+      val read = stripe.lock.readLock()
+      try value = stripe.field(most, least, hash, offset, width)
+      finally stripe.lock.unlockRead(read)
+    value
+
+  // Inlined so the update function is not a closure allocation per call
+  private inline def write(id: UUID, offset: Int, width: Int, inline f: Long => Long): Long =
+    checkField(offset, width)
+    val most = id.getMostSignificantBits
+    val least = id.getLeastSignificantBits
+    val hash = UuidTable.hash(most, least)
+    val stripe = stripeOf(hash)
+    val stamp = stripe.lock.writeLock()
+    try
+      val position = stripe.slotFor(most, least, hash) * recordSize + offset
+      val data = stripe.data
+      if width == 4 then
+        val next = f(data.getInt(position).toLong).toInt
+        data.putInt(position, next)
+        next.toLong
+      else
+        val next = f(data.getLong(position))
+        data.putLong(position, next)
+        next
+    finally stripe.lock.unlockWrite(stamp)
+
+  private def checkField(offset: Int, width: Int): Unit =
+    if offset < 0 || offset + width > recordSize then
+      throw new IndexOutOfBoundsException(s"[Scala SDK] Field at $offset (+$width) outside a $recordSize-byte record")
+
+  private def stripeOf(hash: Long): PlayerRecords.RecordStripe =
+    stripes((hash >>> 40).toInt & stripeMask)
+
+object PlayerRecords:
+
+  /** One stripe: UUID table plus `recordSize` bytes per slot in a direct buffer. */
+  private[scala] final class RecordStripe(capacity: Int, recordSize: Int) extends UuidTable(capacity):
+    var data: ByteBuffer = allocateRecords(capacity)
+    private var resized: ByteBuffer = null
+
+    /** Field of the key's record, or 0. Safe under an optimistic read. */
+    def field(most: Long, least: Long, hash: Long, offset: Int, width: Int): Long =
+      val buffer = data
+      val slot = find(most, least, hash)
+      if slot < 0 then 0L
+      else
+        val position = slot * recordSize + offset
+        if position + width > buffer.capacity then 0L
+        else if width == 4 then buffer.getInt(position).toLong
+        else buffer.getLong(position)
+
+    protected def allocate(capacity: Int): Unit = resized = allocateRecords(capacity)
+    protected def transfer(from: Int, to: Int): Unit = copyRecord(data, from, resized, to)
+    protected def commit(): Unit =
+      data = resized
+      resized = null
+    protected def moveSlot(from: Int, to: Int): Unit = copyRecord(data, from, data, to)
+    protected def clearSlot(slot: Int): Unit =
+      var position = slot * recordSize
+      val end = position + recordSize
+      while position < end do
+        data.put(position, 0.toByte)
+        position += 1
+
+    private def allocateRecords(capacity: Int): ByteBuffer =
+      ByteBuffer.allocateDirect(capacity * recordSize).order(ByteOrder.nativeOrder)
+
+    private def copyRecord(source: ByteBuffer, from: Int, target: ByteBuffer, to: Int): Unit =
+      val sourceStart = from * recordSize
+      val targetStart = to * recordSize
+      var i = 0
+      while i + 8 <= recordSize do
+        target.putLong(targetStart + i, source.getLong(sourceStart + i))
+        i += 8
+      while i < recordSize do
+        target.put(targetStart + i, source.get(sourceStart + i))
+        i += 1
+
+/**
+ * Open-addressing set of UUIDs (as two longs) for one lock stripe; subclasses keep a
+ * payload per slot and follow the moves of [[removeAt]] and resizing.
+ *
+ * [[find]] is safe to call under an optimistic read: it never throws and never loops
+ * forever on a table torn by a concurrent writer - the caller validates and retries.
+ * Everything else requires the stripe's write lock.
+ */
+private[scala] abstract class UuidTable(initialCapacity: Int):
+
+  val lock = new StampedLock()
+  private var most = new Array[Long](initialCapacity)
+  private var least = new Array[Long](initialCapacity)
+  private var used = new Array[Boolean](initialCapacity)
+  private var _size = 0
+
+  def size: Int = _size
+
+  /** Slot of the key, or -1. */
+  final def find(m: Long, l: Long, hash: Long): Int =
+    val ms = most
+    val ls = least
+    val us = used
+    val capacity = us.length
+    // Arrays from different generations: only possible under a failing optimistic read
+    if ms.length != capacity || ls.length != capacity then return -1
+    val mask = capacity - 1
+    var i = hash.toInt & mask
+    var probes = 0
+    while probes < capacity do
+      if !us(i) then return -1
+      if ms(i) == m && ls(i) == l then return i
+      i = (i + 1) & mask
+      probes += 1
+    -1
+
+  /** Slot of the key, inserted with an empty payload if missing. */
+  final def slotFor(m: Long, l: Long, hash: Long): Int =
+    val existing = find(m, l, hash)
+    if existing >= 0 then existing
+    else
+      // Linear probing degrades quickly past 2/3 load
+      if (_size + 1) * 3 > used.length * 2 then resize(used.length * 2)
+      val mask = used.length - 1
+      var i = hash.toInt & mask
+      while used(i) do i = (i + 1) & mask
+      most(i) = m
+      least(i) = l
+      used(i) = true
+      _size += 1
+      i
+
+  /** Free `slot`, moving later entries of its probe run back so lookups need no tombstones. */
+  final def removeAt(slot: Int): Unit =
+    val mask = used.length - 1
+    var hole = slot
+    var i = (slot + 1) & mask
+    while used(i) do
+      val home = UuidTable.hash(most(i), least(i)).toInt & mask
+      // The entry may fill the hole if the hole lies between its home slot and its slot
+      if ((i - home) & mask) >= ((i - hole) & mask) then
+        most(hole) = most(i)
+        least(hole) = least(i)
+        moveSlot(i, hole)
+        hole = i
+      i = (i + 1) & mask
+    used(hole) = false
+    clearSlot(hole)
+    _size -= 1
+
+  protected final def capacityNow: Int = used.length
+  protected final def isUsed(slot: Int): Boolean = used(slot)
+  protected final def mostAt(slot: Int): Long = most(slot)
+  protected final def leastAt(slot: Int): Long = least(slot)
+
+  /** Allocate payload storage for `capacity` slots next to the current one. */
+  protected def allocate(capacity: Int): Unit
+  /** Copy the payload of old slot `from` to new slot `to`. */
+  protected def transfer(from: Int, to: Int): Unit
+  /** Replace the current payload storage with the allocated one. */
+  protected def commit(): Unit
+  protected def moveSlot(from: Int, to: Int): Unit
+  protected def clearSlot(slot: Int): Unit
+
+  private def resize(capacity: Int): Unit =
+    val newMost = new Array[Long](capacity)
+    val newLeast = new Array[Long](capacity)
+    val newUsed = new Array[Boolean](capacity)
+    allocate(capacity)
+    val mask = capacity - 1
+    var slot = 0
+    while slot < used.length do
+      if used(slot) then
+        var i = UuidTable.hash(most(slot), least(slot)).toInt & mask
+        while newUsed(i) do i = (i + 1) & mask
+        newMost(i) = most(slot)
+        newLeast(i) = least(slot)
+        newUsed(i) = true
+        transfer(slot, i)
+      slot += 1
+    most = newMost
+    least = newLeast
+    used = newUsed
+    commit()
+
+private[scala] object UuidTable:
+
+  /** Mix of both halves (murmur3 finalizer); random UUIDs are not random in every bit. */
+  def hash(most: Long, least: Long): Long =
+    var h = most * 0x9E3779B97F4A7C15L ^ least
+    h ^= h >>> 33
+    h *= 0xFF51AFD7ED558CCDL
+    h ^= h >>> 33
+    h *= 0xC4CEB9FE1A85EC53L
+    h ^= h >>> 33
+    h
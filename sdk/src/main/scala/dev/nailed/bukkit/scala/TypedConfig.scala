@@ -0,0 +1,263 @@
+package dev.nailed.bukkit.scala
+
+import org.bukkit.configuration.file.YamlConfiguration
+import java.io.File
+import java.nio.charset.StandardCharsets
+import java.nio.file.{ClosedWatchServiceException, FileSystems, Files, StandardWatchEventKinds, WatchService}
+import java.util.concurrent.{CopyOnWriteArrayList, TimeUnit}
+import java.util.logging.{Level, Logger}
+import scala.concurrent.{ExecutionContext, Future, Promise}
+import scala.util.control.NonFatal
+
+/**
+ * A typed configuration value at a fixed path.
+ *
+ * Keys are resolved once per parse into a slot of the [[ConfigSnapshot]], so reading a key
+ * is an array access - no path splitting, no MemorySection walk, no conversion.
+ *
+ * {{{
+ * val MaxHomes = ConfigKey.int("homes.max", 3)
+ * val Welcome  = ConfigKey.string("messages.welcome", "Welcome!")
+ * }}}
+ *
+ * A key belongs to the one [[TypedConfig]] it is registered with until that config is closed,
+ * so keys may live in an `object` and be registered again after the plugin is re-enabled.
+ */
+final class ConfigKey[A] private (val path: String, val default: A, convert: PartialFunction[Any, A]):
+
+  // Slot in the snapshots of the one config this key is registered with
+  @volatile private[scala] var index: Int = -1
+  @volatile private[scala] var owner: AnyRef = null
+
+  /** The value in `yaml` (or its defaults), or `default` if missing or of the wrong type. */
+  private[scala] def resolve(yaml: YamlConfiguration): Any =
+    val raw = yaml.get(path)
+    if raw != null && convert.isDefinedAt(raw) then convert(raw) else default
+
+  override def toString: String = s"ConfigKey($path)"
+
+object ConfigKey:
+
+  def string(path: String, default: String = ""): ConfigKey[String] =
+    of(path, default) { case value if !value.isInstanceOf[org.bukkit.configuration.ConfigurationSection] => value.toString }
+
+  def int(path: String, default: Int = 0): ConfigKey[Int] =
+    of(path, default) { case n: java.lang.Number => n.intValue }
+
+  def long(path: String, default: Long = 0L): ConfigKey[Long] =
+    of(path, default) { case n: java.lang.Number => n.longValue }
+
+  def double(path: String, default: Double = 0.0): ConfigKey[Double] =
+    of(path, default) { case n: java.lang.Number => n.doubleValue }
+
+  def boolean(path: String, default: Boolean = false): ConfigKey[Boolean] =
+    of(path, default) { case b: java.lang.Boolean => b.booleanValue }
+
+  def stringList(path: String, default: Vector[String] = Vector.empty): ConfigKey[Vector[String]] =
+    of(path, default) { case list: java.util.List[?] =>
+      val out = Vector.newBuilder[String]
+      val it = list.iterator()
+      while it.hasNext do out += String.valueOf(it.next())
+      out.result()
+    }
+
+  /**
+   * A key with a custom conversion of the raw YAML value (String, Number, Boolean,
+   * java.util.List, ConfigurationSection, ...). Values it does not match read as `default`.
+   */
+  def of[A](path: String, default: A)(convert: PartialFunction[Any, A]): ConfigKey[A] =
+    new ConfigKey(path, default, convert)
+
+/**
+ * Immutable values of every key of a [[TypedConfig]] at one point in time.
+ *
+ * Hold on to a snapshot to read several keys consistently - a reload publishes a new
+ * snapshot and never changes an existing one.
+ */
+final class ConfigSnapshot private[scala] (values: Array[Any], owner: AnyRef, val version: Long):
+
+  def apply[A](key: ConfigKey[A]): A =
+    // Index before owner: release clears owner first, registration sets it last
+    val index = key.index
+    if (key.owner ne owner) || index < 0 then
+      throw new IllegalArgumentException(s"[Scala SDK] $key is not registered with this config")
+    values(index).asInstanceOf[A]
+
+/**
+ * Typed, snapshot-based view of a YAML file in the plugin's data folder.
+ *
+ * - Parsing runs on the given ExecutionContext (normally [[BukkitPlugin.async]]), never on the caller
+ * - Each parse resolves every key once and publishes an immutable [[ConfigSnapshot]] with a single
+ *   volatile write; readers never see a half-applied reload
+ * - [[watch]] reloads when the file changes on disk (a WatchService thread, debounced)
+ * - [[onChange]] listeners run on the main thread after a new snapshot is published
+ *
+ * Until the first parse completes, keys read their defaults; [[ready]] completes with the first
+ * parsed snapshot. Defaults come from the same file in the plugin JAR, then from the keys.
+ *
+ * Obtain it through [[BukkitPlugin.typedConfig]], which also closes it on disable.
+ */
+final class TypedConfig private[scala] (
+  val file: File,
+  jarDefaults: () => java.nio.ByteBuffer,
+  keys: Seq[ConfigKey[?]],
+  parser: ExecutionContext,
+  notifier: ExecutionContext,
+  logger: Logger
+):
+  import TypedConfig.*
+
+  private val slots: Array[ConfigKey[?]] = keys.toArray
+  register()
+
+  @volatile private var _snapshot = new ConfigSnapshot(slots.map(_.default), this, 0L)
+  private val listeners = new CopyOnWriteArrayList[ConfigSnapshot => Unit]()
+  private val _ready = Promise[ConfigSnapshot]()
+  private var requested = 0L // guarded by this
+  private var published = 0L // guarded by this
+  private var watchService: WatchService = null // guarded by this
+  @volatile private var closed = false
+
+  /** The current snapshot. */
+  def snapshot: ConfigSnapshot = _snapshot
+
+  /** Value of `key` in the current snapshot. */
+  def apply[A](key: ConfigKey[A]): A = _snapshot(key)
+
+  /** Completes with the first parsed snapshot (or the defaults, if that parse failed). */
+  def ready: Future[ConfigSnapshot] = _ready.future
+
+  /** Run `listener` on the main thread whenever a new snapshot is published. */
+  def onChange(listener: ConfigSnapshot => Unit): Unit = listeners.add(listener)
+
+  /**
+   * Parse the file again off the calling thread. On a parse error the current snapshot
+   * stays in place and the future fails.
+   */
+  def reload(): Future[ConfigSnapshot] =
+    val sequence = synchronized { requested += 1; requested }
+    Future(parse())(parser).map(values => publish(values, sequence))(parser)
+      .recover { case NonFatal(e) =>
+        logger.log(Level.WARNING, s"[Scala SDK] Could not reload ${file.getName} - keeping the previous values", e)
+        _ready.trySuccess(_snapshot)
+        throw e
+      }(parser)
+
+  /** Reload whenever the file is created or modified. */
+  def watch(): Unit = synchronized {
+    if watchService == null && !closed then
+      val folder = file.getAbsoluteFile.getParentFile
+      folder.mkdirs()
+      val service = FileSystems.getDefault.newWatchService()
+      folder.toPath.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY)
+      watchService = service
+      val thread = new Thread((() => watchLoop(service)): Runnable, s"Scala SDK config watcher (${file.getName})")
+      thread.setDaemon(true)
+      thread.start()
+  }
+
+  /** Stop watching, drop listeners and release the keys for another config. */
+  def close(): Unit =
+    val service = synchronized {
+      closed = true
+      val s = watchService
+      watchService = null
+      s
+    }
+    if service != null then
+      try service.close()
+      catch case NonFatal(_) => ()
+    listeners.clear()
+    release(slots.length)
+
+  private def parse(): Array[Any] =
+    val yaml = new YamlConfiguration()
+    val defaults = jarDefaults()
+    if defaults != null then
+      val defaultYaml = new YamlConfiguration()
+      defaultYaml.loadFromString(StandardCharsets.UTF_8.decode(defaults).toString)
+      yaml.setDefaults(defaultYaml)
+    if file.isFile then
+      yaml.loadFromString(new String(Files.readAllBytes(file.toPath), StandardCharsets.UTF_8))
+
+    val values = new Array[Any](slots.length)
+    var i = 0
+    while i < slots.length do
+      values(i) = slots(i).resolve(yaml)
+      i += 1
+    values
+
+  private def publish(values: Array[Any], sequence: Long): ConfigSnapshot =
+    val snapshot = synchronized {
+      // A slower, older parse must not overwrite a newer one
+      if sequence <= published then null
+      else
+        published = sequence
+        val next = new ConfigSnapshot(values, this, sequence)
+        _snapshot = next
+        next
+    }
+    if snapshot == null then _snapshot
+    else
+      _ready.trySuccess(snapshot)
+      if !listeners.isEmpty && !closed then notifier.execute(() => notify(snapshot))
+      snapshot
+
+  private def notify(snapshot: ConfigSnapshot): Unit =
+    val it = listeners.iterator()
+    while it.hasNext do
+      try it.next()(snapshot)
+      catch case NonFatal(e) => logger.log(Level.SEVERE, s"[Scala SDK] ${file.getName} change listener failed", e)
+
+  private def watchLoop(service: WatchService): Unit =
+    try
+      while true do
+        val key = service.take()
+        var relevant = false
+        val events = key.pollEvents().iterator()
+        while events.hasNext do
+          if String.valueOf(events.next().context()) == file.getName then relevant = true
+        key.reset()
+
+        if relevant then
+          // Editors and uploads write in several steps - wait until the file is quiet
+          var next = service.poll(DebounceMillis, TimeUnit.MILLISECONDS)
+          while next != null do
+            next.pollEvents()
+            next.reset()
+            next = service.poll(DebounceMillis, TimeUnit.MILLISECONDS)
+          if !closed then reload()
+    catch
+      case _: ClosedWatchServiceException | _: InterruptedException => ()
+
+  private def register(): Unit =
+    var i = 0
+    while i < slots.length do
+      val key = slots(i)
+      val taken = key.synchronized {
+        key.owner != null || {
+          key.index = i
+          key.owner = this
+          false
+        }
+      }
+      if taken then
+        release(i)
+        throw new IllegalArgumentException(s"[Scala SDK] $key is already registered with another config")
+      i += 1
+
+  /** Unbind the first `count` keys that are still bound to this config. */
+  private def release(count: Int): Unit =
+    var i = 0
+    while i < count do
+      val key = slots(i)
+      key.synchronized {
+        if key.owner eq this then
+          key.owner = null
+          key.index = -1
+      }
+      i += 1
+
+object TypedConfig:
+
+  private val DebounceMillis = 200L